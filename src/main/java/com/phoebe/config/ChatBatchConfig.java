@@ -0,0 +1,59 @@
+package com.phoebe.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "chat.batch")
+public class ChatBatchConfig {
+
+    // Calls in flight per batch, unless the request asks for fewer
+    private int concurrency = 4;
+    // DashScope calls in flight across all batches; further calls wait
+    private int maxConcurrency = 16;
+    // Retries after the first attempt, for throttling, server errors, timeouts and network failures
+    private int maxRetries = 2;
+    // First retry delay, doubled on each further retry with jitter
+    private long retryBackoffMs = 1000;
+    private int maxPrompts = 1000;
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public void setMaxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public long getRetryBackoffMs() {
+        return retryBackoffMs;
+    }
+
+    public void setRetryBackoffMs(long retryBackoffMs) {
+        this.retryBackoffMs = retryBackoffMs;
+    }
+
+    public int getMaxPrompts() {
+        return maxPrompts;
+    }
+
+    public void setMaxPrompts(int maxPrompts) {
+        this.maxPrompts = maxPrompts;
+    }
+}
@@ -0,0 +1,81 @@
+package com.phoebe.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "chat.stream")
+public class ChatStreamConfig {
+
+    /**
+     * What to do when a client reads slower than the model generates
+     */
+    public enum SlowClientPolicy {
+        /** Merge pending deltas into one event; terminate if even that does not fit */
+        COALESCE,
+        /**
+         * Hold the reader until the client catches up; terminate after pauseTimeoutMs, or earlier when
+         * the deltas DashScope keeps sending meanwhile fill the half of the buffer kept free for them.
+         * A paused stream keeps its reader thread, so at most maxConcurrentStreams can be paused at once.
+         */
+        PAUSE,
+        /** Drop the pending deltas and end the stream with an error event */
+        TERMINATE
+    }
+
+    private long maxBufferBytes = 64 * 1024;
+    private long maxTotalBufferBytes = 32 * 1024 * 1024;
+    private SlowClientPolicy slowClientPolicy = SlowClientPolicy.COALESCE;
+    private long pauseTimeoutMs = 30000;
+    // Threads reading DashScope streams, and streams allowed to wait for one; more are refused
+    private int maxConcurrentStreams = 64;
+    private int maxQueuedStreams = 64;
+
+    public long getMaxBufferBytes() {
+        return maxBufferBytes;
+    }
+
+    public void setMaxBufferBytes(long maxBufferBytes) {
+        this.maxBufferBytes = maxBufferBytes;
+    }
+
+    public long getMaxTotalBufferBytes() {
+        return maxTotalBufferBytes;
+    }
+
+    public void setMaxTotalBufferBytes(long maxTotalBufferBytes) {
+        this.maxTotalBufferBytes = maxTotalBufferBytes;
+    }
+
+    public SlowClientPolicy getSlowClientPolicy() {
+        return slowClientPolicy;
+    }
+
+    public void setSlowClientPolicy(SlowClientPolicy slowClientPolicy) {
+        this.slowClientPolicy = slowClientPolicy;
+    }
+
+    public long getPauseTimeoutMs() {
+        return pauseTimeoutMs;
+    }
+
+    public void setPauseTimeoutMs(long pauseTimeoutMs) {
+        this.pauseTimeoutMs = pauseTimeoutMs;
+    }
+
+    public int getMaxConcurrentStreams() {
+        return maxConcurrentStreams;
+    }
+
+    public void setMaxConcurrentStreams(int maxConcurrentStreams) {
+        this.maxConcurrentStreams = maxConcurrentStreams;
+    }
+
+    public int getMaxQueuedStreams() {
+        return maxQueuedStreams;
+    }
+
+    public void setMaxQueuedStreams(int maxQueuedStreams) {
+        this.maxQueuedStreams = maxQueuedStreams;
+    }
+}
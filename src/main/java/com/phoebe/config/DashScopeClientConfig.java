@@ -0,0 +1,30 @@
+package com.phoebe.config;
+
+import com.alibaba.dashscope.aigc.generation.Generation;
+import com.alibaba.dashscope.protocol.ConnectionOptions;
+import com.alibaba.dashscope.protocol.Protocol;
+import com.alibaba.dashscope.utils.Constants;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class DashScopeClientConfig {
+
+    /**
+     * Client for non-streaming calls. The timeouts apply to the HTTP connection itself, so a call that
+     * times out is abandoned rather than left running; one instance keeps one connection pool.
+     */
+    @Bean
+    public Generation generation(DashScopeConfig dashScopeConfig) {
+        Duration timeout = Duration.ofSeconds(dashScopeConfig.getTimeoutSeconds());
+        ConnectionOptions options = ConnectionOptions.builder()
+                .connectTimeout(timeout)
+                .writeTimeout(timeout)
+                .readTimeout(timeout)
+                .build();
+        // dashscope.api.base-url is the OpenAI-compatible endpoint; the SDK talks to its own API
+        return new Generation(Protocol.HTTP.getValue(), Constants.baseHttpApiUrl, options);
+    }
+}
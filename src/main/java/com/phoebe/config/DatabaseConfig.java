@@ -1,20 +1,54 @@
 package com.phoebe.config;
 
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
 import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.springframework.beans.factory.InitializingBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.ClassPathResource;
-import org.springframework.r2dbc.connection.init.ConnectionFactoryInitializer;
 import org.springframework.r2dbc.connection.init.ResourceDatabasePopulator;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.stream.Collectors;
 
 @Configuration
 public class DatabaseConfig {
 
     @Bean
-    public ConnectionFactoryInitializer initializer(ConnectionFactory connectionFactory) {
-        ConnectionFactoryInitializer initializer = new ConnectionFactoryInitializer();
-        initializer.setConnectionFactory(connectionFactory);
-        initializer.setDatabasePopulator(new ResourceDatabasePopulator(new ClassPathResource("schema.sql")));
-        return initializer;
+    public ShardedConnectionFactory connectionFactory(ShardingConfig shardingConfig) {
+        List<ConnectionFactory> shards = shardingConfig.getShards().stream()
+                .map(this::createPool)
+                .collect(Collectors.toList());
+        return new ShardedConnectionFactory(shards, shardingConfig.getPreviousShardCount());
+    }
+
+    /**
+     * Run schema.sql against every shard
+     */
+    @Bean
+    public InitializingBean initializer(ShardedConnectionFactory connectionFactory) {
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator(new ClassPathResource("schema.sql"));
+        return () -> Flux.range(0, connectionFactory.getShardCount())
+                .concatMap(shard -> populator.populate(connectionFactory.getShard(shard)))
+                .blockLast();
+    }
+
+    private ConnectionFactory createPool(ShardingConfig.Shard shard) {
+        ConnectionFactoryOptions.Builder options = ConnectionFactoryOptions.parse(shard.getUrl()).mutate();
+        if (shard.getUsername() != null) {
+            options.option(ConnectionFactoryOptions.USER, shard.getUsername());
+        }
+        if (shard.getPassword() != null && !shard.getPassword().isEmpty()) {
+            options.option(ConnectionFactoryOptions.PASSWORD, shard.getPassword());
+        }
+        ConnectionFactory connectionFactory = ConnectionFactories.get(options.build());
+        return new ConnectionPool(ConnectionPoolConfiguration.builder(connectionFactory)
+                .initialSize(shard.getPoolInitialSize())
+                .maxSize(shard.getPoolMaxSize())
+                .build());
     }
 }
@@ -0,0 +1,38 @@
+package com.phoebe.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "notes.archive")
+public class NoteArchiveConfig {
+
+    private int exportChunkSize = 256;
+    private int importBatchSize = 500;
+    // Longer import lines are skipped as invalid instead of being buffered
+    private int importMaxLineLength = 1_048_576;
+
+    public int getExportChunkSize() {
+        return exportChunkSize;
+    }
+
+    public void setExportChunkSize(int exportChunkSize) {
+        this.exportChunkSize = exportChunkSize;
+    }
+
+    public int getImportBatchSize() {
+        return importBatchSize;
+    }
+
+    public void setImportBatchSize(int importBatchSize) {
+        this.importBatchSize = importBatchSize;
+    }
+
+    public int getImportMaxLineLength() {
+        return importMaxLineLength;
+    }
+
+    public void setImportMaxLineLength(int importMaxLineLength) {
+        this.importMaxLineLength = importMaxLineLength;
+    }
+}
@@ -0,0 +1,46 @@
+package com.phoebe.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "notes.changes")
+public class NoteChangeFeedConfig {
+
+    private int pageSize = 500;
+    private long pollIntervalMs = 500;
+    private long compactionIntervalMs = 3_600_000;
+    private int tombstoneRetentionHours = 168;
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    public long getPollIntervalMs() {
+        return pollIntervalMs;
+    }
+
+    public void setPollIntervalMs(long pollIntervalMs) {
+        this.pollIntervalMs = pollIntervalMs;
+    }
+
+    public long getCompactionIntervalMs() {
+        return compactionIntervalMs;
+    }
+
+    public void setCompactionIntervalMs(long compactionIntervalMs) {
+        this.compactionIntervalMs = compactionIntervalMs;
+    }
+
+    public int getTombstoneRetentionHours() {
+        return tombstoneRetentionHours;
+    }
+
+    public void setTombstoneRetentionHours(int tombstoneRetentionHours) {
+        this.tombstoneRetentionHours = tombstoneRetentionHours;
+    }
+}
@@ -0,0 +1,112 @@
+package com.phoebe.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+@ConfigurationProperties(prefix = "notes.dedup")
+public class NoteDedupConfig {
+
+    /**
+     * What to do when a new note is a near-duplicate of an active note of the same user
+     */
+    public enum DuplicatePolicy {
+        /** Refuse the new note with 409 */
+        REJECT,
+        /** Fold the new note into the existing one: newer content, union of tags */
+        MERGE,
+        /** Store the new note with duplicateOf pointing at the existing one */
+        LINK
+    }
+
+    private boolean enabled = true;
+    private DuplicatePolicy policy = DuplicatePolicy.LINK;
+    // Hamming distance between 64-bit SimHash fingerprints; each extra bit adds an index band
+    private int maxDistance = 6;
+    // Letters and digits after normalization; shorter notes are too easy to confuse
+    private int minContentLength = 50;
+    // Only check notes from these sources; empty means all
+    private List<String> sources = new ArrayList<>();
+    private int maxCachedUsers = 10_000;
+    // Cached indexes are rebuilt from the table after this long, picking up writes from other instances
+    private long indexTtlMs = 300_000;
+    // Off by default: turn it on for one instance only, every instance would otherwise scan the table
+    private boolean backfillEnabled = false;
+    // Older notes fingerprinted per transaction by the background backfill
+    private int backfillBatchSize = 500;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public DuplicatePolicy getPolicy() {
+        return policy;
+    }
+
+    public void setPolicy(DuplicatePolicy policy) {
+        this.policy = policy;
+    }
+
+    public int getMaxDistance() {
+        return maxDistance;
+    }
+
+    public void setMaxDistance(int maxDistance) {
+        this.maxDistance = maxDistance;
+    }
+
+    public int getMinContentLength() {
+        return minContentLength;
+    }
+
+    public void setMinContentLength(int minContentLength) {
+        this.minContentLength = minContentLength;
+    }
+
+    public List<String> getSources() {
+        return sources;
+    }
+
+    public void setSources(List<String> sources) {
+        this.sources = sources;
+    }
+
+    public int getMaxCachedUsers() {
+        return maxCachedUsers;
+    }
+
+    public void setMaxCachedUsers(int maxCachedUsers) {
+        this.maxCachedUsers = maxCachedUsers;
+    }
+
+    public long getIndexTtlMs() {
+        return indexTtlMs;
+    }
+
+    public void setIndexTtlMs(long indexTtlMs) {
+        this.indexTtlMs = indexTtlMs;
+    }
+
+    public boolean isBackfillEnabled() {
+        return backfillEnabled;
+    }
+
+    public void setBackfillEnabled(boolean backfillEnabled) {
+        this.backfillEnabled = backfillEnabled;
+    }
+
+    public int getBackfillBatchSize() {
+        return backfillBatchSize;
+    }
+
+    public void setBackfillBatchSize(int backfillBatchSize) {
+        this.backfillBatchSize = backfillBatchSize;
+    }
+}
@@ -0,0 +1,48 @@
+package com.phoebe.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "notes.facets")
+public class NoteFacetConfig {
+
+    // Off by default: turn it on for one instance only, every instance would otherwise recount everything
+    private boolean scheduledRepairEnabled = false;
+    private long repairIntervalMs = 86_400_000;
+    // Also rebuilds the counters once shortly after startup, e.g. right after they were introduced
+    private long repairInitialDelayMs = 60_000;
+    private int maxTags = 100;
+
+    public boolean isScheduledRepairEnabled() {
+        return scheduledRepairEnabled;
+    }
+
+    public void setScheduledRepairEnabled(boolean scheduledRepairEnabled) {
+        this.scheduledRepairEnabled = scheduledRepairEnabled;
+    }
+
+    public long getRepairIntervalMs() {
+        return repairIntervalMs;
+    }
+
+    public void setRepairIntervalMs(long repairIntervalMs) {
+        this.repairIntervalMs = repairIntervalMs;
+    }
+
+    public long getRepairInitialDelayMs() {
+        return repairInitialDelayMs;
+    }
+
+    public void setRepairInitialDelayMs(long repairInitialDelayMs) {
+        this.repairInitialDelayMs = repairInitialDelayMs;
+    }
+
+    public int getMaxTags() {
+        return maxTags;
+    }
+
+    public void setMaxTags(int maxTags) {
+        this.maxTags = maxTags;
+    }
+}
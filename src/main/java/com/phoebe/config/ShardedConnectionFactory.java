@@ -0,0 +1,165 @@
+package com.phoebe.config;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryMetadata;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.r2dbc.connection.lookup.AbstractRoutingConnectionFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Routes every connection to one of N shard pools by a shard index carried in the Reactor context.
+ * <p>
+ * Per-user work runs under {@link #routeToUser(String)}; there is deliberately no default shard,
+ * so a query issued without a route fails instead of silently hitting the wrong database.
+ * Transactions must be started inside the route (i.e. the route is written downstream of them).
+ * <p>
+ * While shards are being added (previousShardCount set), a user whose home shard changes stays on
+ * the old one until the rebalance has marked them moved there, so reads and deletes never hit a
+ * shard their notes have not reached yet. Only those users cost an extra lookup per connection.
+ */
+public class ShardedConnectionFactory extends AbstractRoutingConnectionFactory implements DisposableBean {
+
+    /** A rebalance is copying the user away from this shard; writes here are refused */
+    public static final String MOVE_STATE_MOVING = "moving";
+    /** The user now lives on their new home shard */
+    public static final String MOVE_STATE_MOVED = "moved";
+
+    private static final String SHARD_KEY = ShardedConnectionFactory.class.getName() + ".shard";
+    private static final String USER_KEY = ShardedConnectionFactory.class.getName() + ".user";
+    private static final String MOVE_STATE_SQL = "SELECT move_state FROM note_change_seqs WHERE user_id = $1";
+
+    private final List<ConnectionFactory> shards;
+    private final int previousShardCount;
+
+    public ShardedConnectionFactory(List<ConnectionFactory> shards, int previousShardCount) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard must be configured");
+        }
+        if (previousShardCount < 0 || previousShardCount > shards.size()) {
+            throw new IllegalArgumentException("previousShardCount must be between 0 and the number of shards");
+        }
+        this.shards = List.copyOf(shards);
+        this.previousShardCount = previousShardCount;
+        Map<Object, Object> targets = new HashMap<>();
+        for (int i = 0; i < shards.size(); i++) {
+            targets.put(i, shards.get(i));
+        }
+        setTargetConnectionFactories(targets);
+        setLenientFallback(false);
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    public ConnectionFactory getShard(int shard) {
+        return shards.get(shard);
+    }
+
+    /**
+     * Home shard of a user with the current number of shards
+     */
+    public int shardOf(String userId) {
+        return shardOf(userId, shards.size());
+    }
+
+    /**
+     * Shard currently holding a user's notes: the home shard, or while shards are being added and the
+     * user has not been moved yet, the shard they had before
+     */
+    public Mono<Integer> resolveShard(String userId) {
+        int home = shardOf(userId);
+        if (previousShardCount == 0 || previousShardCount == shards.size()) {
+            return Mono.just(home);
+        }
+        int previous = shardOf(userId, previousShardCount);
+        if (previous == home) {
+            return Mono.just(home);
+        }
+        return Mono.usingWhen(shards.get(previous).create(),
+                        connection -> moveState(connection, userId),
+                        Connection::close)
+                .map(state -> MOVE_STATE_MOVED.equals(state) ? home : previous)
+                .defaultIfEmpty(previous);
+    }
+
+    /**
+     * Jump consistent hash: growing from n to n+1 shards only moves ~1/(n+1) of the users,
+     * and only onto the new shard
+     */
+    public static int shardOf(String userId, int shardCount) {
+        long key = fnv1a64(userId);
+        long b = -1;
+        long j = 0;
+        while (j < shardCount) {
+            b = j;
+            key = key * 2862933555777941757L + 1;
+            j = (long) ((b + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+        return (int) b;
+    }
+
+    /**
+     * Route to the shard holding the user's notes, resolved whenever a connection is taken
+     */
+    public Function<Context, Context> routeToUser(String userId) {
+        return context -> context.put(USER_KEY, userId);
+    }
+
+    public static Function<Context, Context> routeToShard(int shard) {
+        return context -> context.put(SHARD_KEY, shard);
+    }
+
+    @Override
+    protected Mono<Object> determineCurrentLookupKey() {
+        return Mono.deferContextual(context -> {
+            Optional<Object> shard = context.getOrEmpty(SHARD_KEY);
+            if (shard.isPresent()) {
+                return Mono.just(shard.get());
+            }
+            return Mono.justOrEmpty(context.<String>getOrEmpty(USER_KEY)).flatMap(this::resolveShard).map(Object.class::cast);
+        });
+    }
+
+    @Override
+    public ConnectionFactoryMetadata getMetadata() {
+        // All shards run the same database; dialect detection just needs one of them
+        return shards.get(0).getMetadata();
+    }
+
+    @Override
+    public void destroy() {
+        for (ConnectionFactory shard : shards) {
+            if (shard instanceof ConnectionPool pool) {
+                pool.dispose();
+            }
+        }
+    }
+
+    private static Mono<String> moveState(Connection connection, String userId) {
+        return Flux.from(connection.createStatement(MOVE_STATE_SQL).bind("$1", userId).execute())
+                .flatMap(result -> result.map((row, metadata) -> Optional.ofNullable(row.get("move_state", String.class))))
+                .next()
+                .flatMap(Mono::justOrEmpty);
+    }
+
+    private static long fnv1a64(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,82 @@
+package com.phoebe.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+@ConfigurationProperties(prefix = "notes.sharding")
+public class ShardingConfig {
+
+    // Order matters: a user's shard is derived from its position in this list
+    private List<Shard> shards = new ArrayList<>();
+    // Number of shards before the last ones were appended, while their users are being moved; 0 when not moving
+    private int previousShardCount;
+
+    public List<Shard> getShards() {
+        return shards;
+    }
+
+    public void setShards(List<Shard> shards) {
+        this.shards = shards;
+    }
+
+    public int getPreviousShardCount() {
+        return previousShardCount;
+    }
+
+    public void setPreviousShardCount(int previousShardCount) {
+        this.previousShardCount = previousShardCount;
+    }
+
+    public static class Shard {
+
+        private String url;
+        private String username;
+        private String password;
+        private int poolInitialSize = 2;
+        private int poolMaxSize = 10;
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+
+        public int getPoolInitialSize() {
+            return poolInitialSize;
+        }
+
+        public void setPoolInitialSize(int poolInitialSize) {
+            this.poolInitialSize = poolInitialSize;
+        }
+
+        public int getPoolMaxSize() {
+            return poolMaxSize;
+        }
+
+        public void setPoolMaxSize(int poolMaxSize) {
+            this.poolMaxSize = poolMaxSize;
+        }
+    }
+}
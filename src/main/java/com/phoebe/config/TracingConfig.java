@@ -0,0 +1,60 @@
+package com.phoebe.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+@ConfigurationProperties(prefix = "tracing")
+public class TracingConfig {
+
+    private boolean enabled = true;
+    private double sampleRate = 0.01;
+    // Finished traces kept in memory, rounded up to a power of two
+    private int capacity = 1024;
+    private List<String> paths = new ArrayList<>(List.of("/api/v1/notes", "/api/v1/chat/stream", "/api/v1/chat/batch"));
+    // Long-lived subscriptions would only crowd out real requests
+    private List<String> excludePaths = new ArrayList<>(List.of("/api/v1/notes/changes/stream"));
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(double sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public List<String> getPaths() {
+        return paths;
+    }
+
+    public void setPaths(List<String> paths) {
+        this.paths = paths;
+    }
+
+    public List<String> getExcludePaths() {
+        return excludePaths;
+    }
+
+    public void setExcludePaths(List<String> excludePaths) {
+        this.excludePaths = excludePaths;
+    }
+}
@@ -0,0 +1,53 @@
+package com.phoebe.config;
+
+import com.phoebe.service.Trace;
+import com.phoebe.service.TraceRecorder;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * Starts a sampled {@link Trace} for matching requests and records it once the response is done
+ */
+@Component
+public class TracingWebFilter implements WebFilter {
+
+    private static final String TRACE_ID_HEADER = "X-Trace-Id";
+
+    private final TracingConfig config;
+    private final TraceRecorder traceRecorder;
+
+    public TracingWebFilter(TracingConfig config, TraceRecorder traceRecorder) {
+        this.config = config;
+        this.traceRecorder = traceRecorder;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String path = exchange.getRequest().getPath().pathWithinApplication().value();
+        if (!isTraced(path)) {
+            return chain.filter(exchange);
+        }
+        Trace trace = traceRecorder.start(exchange.getRequest().getMethod().name() + " " + path);
+        if (!trace.isSampled()) {
+            return chain.filter(exchange);
+        }
+        exchange.getResponse().getHeaders().set(TRACE_ID_HEADER, trace.getTraceId());
+        return chain.filter(exchange)
+                .doFinally(signal -> {
+                    HttpStatusCode status = exchange.getResponse().getStatusCode();
+                    traceRecorder.finish(trace, status != null ? status.value() : 200,
+                            signal.name().replace("ON_", "").toLowerCase());
+                })
+                .contextWrite(context -> context.put(Trace.CONTEXT_KEY, trace));
+    }
+
+    private boolean isTraced(String path) {
+        return config.isEnabled()
+                && config.getPaths().stream().anyMatch(path::startsWith)
+                && config.getExcludePaths().stream().noneMatch(path::startsWith);
+    }
+}
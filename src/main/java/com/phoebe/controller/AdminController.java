@@ -0,0 +1,90 @@
+package com.phoebe.controller;
+
+import com.phoebe.dto.FacetRepairResponse;
+import com.phoebe.dto.RebalanceResponse;
+import com.phoebe.dto.ShardStats;
+import com.phoebe.dto.TraceRecord;
+import com.phoebe.entity.Note;
+import com.phoebe.service.NoteAdminService;
+import com.phoebe.service.NoteFacetService;
+import com.phoebe.service.ShardRebalanceService;
+import com.phoebe.service.TraceRecorder;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.OffsetDateTime;
+
+@RestController
+@RequestMapping("/api/v1/admin")
+public class AdminController {
+
+    private static final int MAX_LIMIT = 1000;
+
+    private final NoteAdminService noteAdminService;
+    private final ShardRebalanceService shardRebalanceService;
+    private final NoteFacetService noteFacetService;
+    private final TraceRecorder traceRecorder;
+
+    public AdminController(NoteAdminService noteAdminService, ShardRebalanceService shardRebalanceService,
+                           NoteFacetService noteFacetService, TraceRecorder traceRecorder) {
+        this.noteAdminService = noteAdminService;
+        this.shardRebalanceService = shardRebalanceService;
+        this.noteFacetService = noteFacetService;
+        this.traceRecorder = traceRecorder;
+    }
+
+    /**
+     * Newest active notes across all users and shards
+     */
+    @GetMapping("/notes")
+    public Flux<Note> getActiveNotes(
+            @RequestParam(required = false) String source,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime to,
+            @RequestParam(defaultValue = "100") @Min(1) @Max(MAX_LIMIT) int limit) {
+        return noteAdminService.findActiveNotes(source, from, to, limit);
+    }
+
+    /**
+     * Note counts per shard
+     */
+    @GetMapping("/shards")
+    public Flux<ShardStats> getShardStats() {
+        return noteAdminService.getShardStats();
+    }
+
+    /**
+     * Move users onto their home shard after shards were added
+     */
+    @PostMapping("/shards/rebalance")
+    public Mono<RebalanceResponse> rebalance() {
+        return shardRebalanceService.rebalance();
+    }
+
+    /**
+     * Recompute facet counters of all users from the notes table
+     */
+    @PostMapping("/facets/repair")
+    public Mono<FacetRepairResponse> repairFacets() {
+        return noteFacetService.repairAll();
+    }
+
+    /**
+     * Recent sampled request traces, newest first, optionally only slow ones
+     */
+    @GetMapping("/traces")
+    public Flux<TraceRecord> getTraces(
+            @RequestParam(defaultValue = "0") long minDurationMs,
+            @RequestParam(required = false) String name,
+            @RequestParam(defaultValue = "50") @Min(1) @Max(MAX_LIMIT) int limit) {
+        return Flux.fromIterable(traceRecorder.find(minDurationMs, name, limit));
+    }
+}
@@ -1,13 +1,19 @@
 package com.phoebe.controller;
 
+import com.phoebe.dto.ChatBatchResult;
+import com.phoebe.dto.ChatBufferStats;
 import com.phoebe.dto.ChatRequest;
+import com.phoebe.service.ChatBatchService;
 import com.phoebe.service.ChatService;
+import com.phoebe.service.Trace;
 import jakarta.validation.Valid;
 import org.springframework.http.MediaType;
 import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Flux;
 
@@ -16,13 +22,34 @@ import reactor.core.publisher.Flux;
 public class ChatController {
 
     private final ChatService chatService;
+    private final ChatBatchService chatBatchService;
 
-    public ChatController(ChatService chatService) {
+    public ChatController(ChatService chatService, ChatBatchService chatBatchService) {
         this.chatService = chatService;
+        this.chatBatchService = chatBatchService;
     }
 
     @PostMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     public Flux<ServerSentEvent<String>> streamChat(@Valid @RequestBody ChatRequest request) {
-        return chatService.streamChat(request);
+        return Trace.handler(chatService.streamChat(request));
+    }
+
+    /**
+     * Run NDJSON prompts as non-streaming calls; results are NDJSON in completion order, then a summary line
+     */
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<ChatBatchResult> batchChat(
+            @RequestBody Flux<ChatRequest> requests,
+            @RequestParam(required = false) Integer concurrency) {
+        return Trace.streamingHandler(chatBatchService.run(requests, concurrency));
+    }
+
+    /**
+     * Per-stream and total buffered bytes of active chat streams
+     */
+    @GetMapping("/streams")
+    public ChatBufferStats getStreamStats() {
+        return chatService.getBufferStats();
     }
 }
@@ -1,11 +1,29 @@
 package com.phoebe.controller;
 
+import com.phoebe.dto.NoteChangeEvent;
+import com.phoebe.dto.NoteChangesResponse;
+import com.phoebe.dto.NoteFacetSummary;
+import com.phoebe.dto.NoteImportResponse;
+import com.phoebe.dto.NoteRecord;
 import com.phoebe.dto.NoteRequest;
 import com.phoebe.dto.NoteResponse;
 import com.phoebe.entity.Note;
+import com.phoebe.exception.DuplicateNoteException;
+import com.phoebe.exception.UserMovingException;
+import com.phoebe.service.NoteArchiveService;
+import com.phoebe.service.NoteChangeService;
+import com.phoebe.service.NoteFacetService;
 import com.phoebe.service.NoteService;
+import com.phoebe.service.Trace;
 import jakarta.validation.Valid;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -23,16 +41,50 @@ import reactor.core.publisher.Mono;
 @RequestMapping("/api/v1/notes")
 public class NoteController {
 
+    // Compact formats for service-to-service traffic; tags are sent as a real array
+    private static final String SMILE = "application/x-jackson-smile";
+    private static final String STREAM_SMILE = "application/stream+x-jackson-smile";
+
     private final NoteService noteService;
+    private final NoteChangeService noteChangeService;
+    private final NoteArchiveService noteArchiveService;
+    private final NoteFacetService noteFacetService;
 
-    public NoteController(NoteService noteService) {
+    public NoteController(NoteService noteService, NoteChangeService noteChangeService,
+                          NoteArchiveService noteArchiveService, NoteFacetService noteFacetService) {
         this.noteService = noteService;
+        this.noteChangeService = noteChangeService;
+        this.noteArchiveService = noteArchiveService;
+        this.noteFacetService = noteFacetService;
     }
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     public Mono<NoteResponse> createNote(@Valid @RequestBody NoteRequest request) {
-        return noteService.createNote(request);
+        return Trace.handler(noteService.createNote(request));
+    }
+
+    /**
+     * Create notes from an NDJSON or Smile stream, answering in the request's format;
+     * a rejected near-duplicate answers status "duplicate", a note refused while its user is moved
+     * between shards answers "retry_later", and the stream goes on
+     */
+    @PostMapping(consumes = {MediaType.APPLICATION_NDJSON_VALUE, SMILE, STREAM_SMILE},
+            produces = {MediaType.APPLICATION_NDJSON_VALUE, SMILE, STREAM_SMILE})
+    public ResponseEntity<Flux<NoteResponse>> createNotes(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+            @Valid @RequestBody Flux<NoteRequest> requests) {
+        // An explicit content type wins over Accept, which for */* would pick NDJSON for a Smile request
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .contentType(new MediaType(contentType.getType(), contentType.getSubtype()))
+                .body(Trace.streamingHandler(requests.concatMap(request -> noteService.createNote(request)
+                        .onErrorResume(DuplicateNoteException.class, e -> {
+                            NoteResponse response = new NoteResponse(null, "duplicate");
+                            response.setDuplicateOf(e.getDuplicateOf());
+                            return Mono.just(response);
+                        })
+                        .onErrorResume(UserMovingException.class,
+                                e -> Mono.just(new NoteResponse(null, "retry_later"))))));
     }
 
     /**
@@ -43,9 +95,27 @@ public class NoteController {
             @RequestHeader("X-User-Id") String userId,
             @RequestParam(required = false) String source) {
         if (source != null && !source.isBlank()) {
-            return noteService.getActiveNotesBySource(userId, source);
+            return Trace.handler(noteService.getActiveNotesBySource(userId, source));
         }
-        return noteService.getActiveNotes(userId);
+        return Trace.handler(noteService.getActiveNotes(userId));
+    }
+
+    /**
+     * Get all active notes for a user as NDJSON or Smile
+     */
+    @GetMapping(produces = {MediaType.APPLICATION_NDJSON_VALUE, SMILE, STREAM_SMILE})
+    public Flux<NoteRecord> getActiveNoteRecords(
+            @RequestHeader("X-User-Id") String userId,
+            @RequestParam(required = false) String source) {
+        return Trace.handler(noteService.getActiveNoteRecords(userId, source));
+    }
+
+    /**
+     * Active note counts per source, tag and month
+     */
+    @GetMapping("/facets")
+    public Mono<NoteFacetSummary> getFacets(@RequestHeader("X-User-Id") String userId) {
+        return Trace.handler(noteFacetService.getSummary(userId));
     }
 
     /**
@@ -55,6 +125,52 @@ public class NoteController {
     public Mono<NoteResponse> deleteNote(
             @PathVariable String noteId,
             @RequestHeader("X-User-Id") String userId) {
-        return noteService.deleteNote(noteId, userId);
+        return Trace.handler(noteService.deleteNote(noteId, userId));
+    }
+
+    /**
+     * Get changes (create / update / delete) after the given seq, for incremental sync
+     */
+    @GetMapping("/changes")
+    public Mono<NoteChangesResponse> getChanges(
+            @RequestHeader("X-User-Id") String userId,
+            @RequestParam(defaultValue = "0") long since,
+            @RequestParam(defaultValue = "500") int limit) {
+        return Trace.handler(noteChangeService.getChanges(userId, since, limit));
+    }
+
+    /**
+     * Subscribe to changes after the given seq via SSE
+     */
+    @GetMapping(value = "/changes/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<NoteChangeEvent>> streamChanges(
+            @RequestHeader("X-User-Id") String userId,
+            @RequestParam(defaultValue = "0") long since) {
+        return noteChangeService.streamChanges(userId, since);
+    }
+
+    /**
+     * Export all notes of a user as gzip-compressed NDJSON
+     */
+    @GetMapping("/export")
+    public ResponseEntity<Flux<DataBuffer>> exportNotes(
+            @RequestHeader("X-User-Id") String userId,
+            @RequestParam(defaultValue = "false") boolean includeDeleted,
+            ServerHttpResponse response) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/gzip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename("notes.ndjson.gz").build().toString())
+                .body(noteArchiveService.exportNotes(userId, includeDeleted, response.bufferFactory()));
+    }
+
+    /**
+     * Import notes from NDJSON (gzip-compressed or plain), skipping ids that already exist
+     */
+    @PostMapping("/import")
+    public Mono<NoteImportResponse> importNotes(
+            @RequestHeader("X-User-Id") String userId,
+            @RequestBody Flux<DataBuffer> body) {
+        return Trace.streamingHandler(noteArchiveService.importNotes(userId, body));
     }
 }
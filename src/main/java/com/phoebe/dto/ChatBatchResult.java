@@ -0,0 +1,125 @@
+package com.phoebe.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * One NDJSON line of a batch chat response: the result of the prompt at index,
+ * or, as the last line, the batch summary
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ChatBatchResult {
+
+    private Integer index;      // line number of the prompt in the request, from 0
+    private String sessionId;
+    private String content;
+    private String finishReason;
+    private ChatUsage usage;
+    private String error;
+    private Integer attempts;
+    private Long durationMs;
+    private ChatBatchSummary summary;
+
+    public ChatBatchResult() {
+    }
+
+    public static ChatBatchResult success(int index, String sessionId, String content, String finishReason,
+                                          ChatUsage usage, int attempts, long durationMs) {
+        ChatBatchResult result = new ChatBatchResult();
+        result.index = index;
+        result.sessionId = sessionId;
+        result.content = content;
+        result.finishReason = finishReason;
+        result.usage = usage;
+        result.attempts = attempts;
+        result.durationMs = durationMs;
+        return result;
+    }
+
+    public static ChatBatchResult failure(int index, String sessionId, String error, int attempts, long durationMs) {
+        ChatBatchResult result = new ChatBatchResult();
+        result.index = index;
+        result.sessionId = sessionId;
+        result.error = error;
+        result.attempts = attempts;
+        result.durationMs = durationMs;
+        return result;
+    }
+
+    public static ChatBatchResult summary(ChatBatchSummary summary) {
+        ChatBatchResult result = new ChatBatchResult();
+        result.summary = summary;
+        return result;
+    }
+
+    public Integer getIndex() {
+        return index;
+    }
+
+    public void setIndex(Integer index) {
+        this.index = index;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+    }
+
+    public String getFinishReason() {
+        return finishReason;
+    }
+
+    public void setFinishReason(String finishReason) {
+        this.finishReason = finishReason;
+    }
+
+    public ChatUsage getUsage() {
+        return usage;
+    }
+
+    public void setUsage(ChatUsage usage) {
+        this.usage = usage;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public Integer getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(Integer attempts) {
+        this.attempts = attempts;
+    }
+
+    public Long getDurationMs() {
+        return durationMs;
+    }
+
+    public void setDurationMs(Long durationMs) {
+        this.durationMs = durationMs;
+    }
+
+    public ChatBatchSummary getSummary() {
+        return summary;
+    }
+
+    public void setSummary(ChatBatchSummary summary) {
+        this.summary = summary;
+    }
+}
@@ -0,0 +1,71 @@
+package com.phoebe.dto;
+
+public class ChatBatchSummary {
+
+    private long total;
+    private long succeeded;
+    private long failed;
+    private long retries;
+    private ChatUsage usage;    // summed over successful prompts
+    private long durationMs;
+
+    public ChatBatchSummary() {
+    }
+
+    public ChatBatchSummary(long total, long succeeded, long failed, long retries, ChatUsage usage, long durationMs) {
+        this.total = total;
+        this.succeeded = succeeded;
+        this.failed = failed;
+        this.retries = retries;
+        this.usage = usage;
+        this.durationMs = durationMs;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public void setTotal(long total) {
+        this.total = total;
+    }
+
+    public long getSucceeded() {
+        return succeeded;
+    }
+
+    public void setSucceeded(long succeeded) {
+        this.succeeded = succeeded;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public void setFailed(long failed) {
+        this.failed = failed;
+    }
+
+    public long getRetries() {
+        return retries;
+    }
+
+    public void setRetries(long retries) {
+        this.retries = retries;
+    }
+
+    public ChatUsage getUsage() {
+        return usage;
+    }
+
+    public void setUsage(ChatUsage usage) {
+        this.usage = usage;
+    }
+
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    public void setDurationMs(long durationMs) {
+        this.durationMs = durationMs;
+    }
+}
@@ -0,0 +1,85 @@
+package com.phoebe.dto;
+
+import java.util.List;
+
+public class ChatBufferStats {
+
+    private String slowClientPolicy;
+    private int activeStreams;
+    private long totalBufferedBytes;
+    private long peakTotalBufferedBytes;
+    private long maxTotalBufferBytes;
+    private long terminatedStreams;
+    private List<ChatStreamStats> streams;
+
+    public ChatBufferStats() {
+    }
+
+    public ChatBufferStats(String slowClientPolicy, int activeStreams, long totalBufferedBytes,
+                           long peakTotalBufferedBytes, long maxTotalBufferBytes, long terminatedStreams,
+                           List<ChatStreamStats> streams) {
+        this.slowClientPolicy = slowClientPolicy;
+        this.activeStreams = activeStreams;
+        this.totalBufferedBytes = totalBufferedBytes;
+        this.peakTotalBufferedBytes = peakTotalBufferedBytes;
+        this.maxTotalBufferBytes = maxTotalBufferBytes;
+        this.terminatedStreams = terminatedStreams;
+        this.streams = streams;
+    }
+
+    public String getSlowClientPolicy() {
+        return slowClientPolicy;
+    }
+
+    public void setSlowClientPolicy(String slowClientPolicy) {
+        this.slowClientPolicy = slowClientPolicy;
+    }
+
+    public int getActiveStreams() {
+        return activeStreams;
+    }
+
+    public void setActiveStreams(int activeStreams) {
+        this.activeStreams = activeStreams;
+    }
+
+    public long getTotalBufferedBytes() {
+        return totalBufferedBytes;
+    }
+
+    public void setTotalBufferedBytes(long totalBufferedBytes) {
+        this.totalBufferedBytes = totalBufferedBytes;
+    }
+
+    public long getPeakTotalBufferedBytes() {
+        return peakTotalBufferedBytes;
+    }
+
+    public void setPeakTotalBufferedBytes(long peakTotalBufferedBytes) {
+        this.peakTotalBufferedBytes = peakTotalBufferedBytes;
+    }
+
+    public long getMaxTotalBufferBytes() {
+        return maxTotalBufferBytes;
+    }
+
+    public void setMaxTotalBufferBytes(long maxTotalBufferBytes) {
+        this.maxTotalBufferBytes = maxTotalBufferBytes;
+    }
+
+    public long getTerminatedStreams() {
+        return terminatedStreams;
+    }
+
+    public void setTerminatedStreams(long terminatedStreams) {
+        this.terminatedStreams = terminatedStreams;
+    }
+
+    public List<ChatStreamStats> getStreams() {
+        return streams;
+    }
+
+    public void setStreams(List<ChatStreamStats> streams) {
+        this.streams = streams;
+    }
+}
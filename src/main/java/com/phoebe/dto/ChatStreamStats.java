@@ -0,0 +1,93 @@
+package com.phoebe.dto;
+
+public class ChatStreamStats {
+
+    private long streamId;
+    private String sessionId;
+    private long bufferedBytes;
+    // Part of bufferedBytes: deltas received from DashScope that the reader has not taken yet
+    private long upstreamBytes;
+    private long peakBufferedBytes;
+    private int pendingEvents;
+    private long coalescedDeltas;
+    private boolean paused;
+
+    public ChatStreamStats() {
+    }
+
+    public ChatStreamStats(long streamId, String sessionId, long bufferedBytes, long upstreamBytes,
+                           long peakBufferedBytes, int pendingEvents, long coalescedDeltas, boolean paused) {
+        this.streamId = streamId;
+        this.sessionId = sessionId;
+        this.bufferedBytes = bufferedBytes;
+        this.upstreamBytes = upstreamBytes;
+        this.peakBufferedBytes = peakBufferedBytes;
+        this.pendingEvents = pendingEvents;
+        this.coalescedDeltas = coalescedDeltas;
+        this.paused = paused;
+    }
+
+    public long getStreamId() {
+        return streamId;
+    }
+
+    public void setStreamId(long streamId) {
+        this.streamId = streamId;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public long getBufferedBytes() {
+        return bufferedBytes;
+    }
+
+    public void setBufferedBytes(long bufferedBytes) {
+        this.bufferedBytes = bufferedBytes;
+    }
+
+    public long getUpstreamBytes() {
+        return upstreamBytes;
+    }
+
+    public void setUpstreamBytes(long upstreamBytes) {
+        this.upstreamBytes = upstreamBytes;
+    }
+
+    public long getPeakBufferedBytes() {
+        return peakBufferedBytes;
+    }
+
+    public void setPeakBufferedBytes(long peakBufferedBytes) {
+        this.peakBufferedBytes = peakBufferedBytes;
+    }
+
+    public int getPendingEvents() {
+        return pendingEvents;
+    }
+
+    public void setPendingEvents(int pendingEvents) {
+        this.pendingEvents = pendingEvents;
+    }
+
+    public long getCoalescedDeltas() {
+        return coalescedDeltas;
+    }
+
+    public void setCoalescedDeltas(long coalescedDeltas) {
+        this.coalescedDeltas = coalescedDeltas;
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    public void setPaused(boolean paused) {
+        this.paused = paused;
+    }
+}
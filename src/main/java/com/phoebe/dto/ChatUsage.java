@@ -0,0 +1,41 @@
+package com.phoebe.dto;
+
+public class ChatUsage {
+
+    private long inputTokens;
+    private long outputTokens;
+    private long totalTokens;
+
+    public ChatUsage() {
+    }
+
+    public ChatUsage(long inputTokens, long outputTokens, long totalTokens) {
+        this.inputTokens = inputTokens;
+        this.outputTokens = outputTokens;
+        this.totalTokens = totalTokens;
+    }
+
+    public long getInputTokens() {
+        return inputTokens;
+    }
+
+    public void setInputTokens(long inputTokens) {
+        this.inputTokens = inputTokens;
+    }
+
+    public long getOutputTokens() {
+        return outputTokens;
+    }
+
+    public void setOutputTokens(long outputTokens) {
+        this.outputTokens = outputTokens;
+    }
+
+    public long getTotalTokens() {
+        return totalTokens;
+    }
+
+    public void setTotalTokens(long totalTokens) {
+        this.totalTokens = totalTokens;
+    }
+}
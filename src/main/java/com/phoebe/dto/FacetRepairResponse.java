@@ -0,0 +1,31 @@
+package com.phoebe.dto;
+
+public class FacetRepairResponse {
+
+    private long usersRepaired;
+    private long usersFailed;
+
+    public FacetRepairResponse() {
+    }
+
+    public FacetRepairResponse(long usersRepaired, long usersFailed) {
+        this.usersRepaired = usersRepaired;
+        this.usersFailed = usersFailed;
+    }
+
+    public long getUsersRepaired() {
+        return usersRepaired;
+    }
+
+    public void setUsersRepaired(long usersRepaired) {
+        this.usersRepaired = usersRepaired;
+    }
+
+    public long getUsersFailed() {
+        return usersFailed;
+    }
+
+    public void setUsersFailed(long usersFailed) {
+        this.usersFailed = usersFailed;
+    }
+}
@@ -0,0 +1,67 @@
+package com.phoebe.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.phoebe.entity.Note;
+
+import java.time.OffsetDateTime;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class NoteChangeEvent {
+
+    private long seq;
+    private String op;
+    private String noteId;
+    private OffsetDateTime changedAt;
+    private Note note; // only present for create
+
+    public NoteChangeEvent() {
+    }
+
+    public NoteChangeEvent(long seq, String op, String noteId, OffsetDateTime changedAt, Note note) {
+        this.seq = seq;
+        this.op = op;
+        this.noteId = noteId;
+        this.changedAt = changedAt;
+        this.note = note;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(long seq) {
+        this.seq = seq;
+    }
+
+    public String getOp() {
+        return op;
+    }
+
+    public void setOp(String op) {
+        this.op = op;
+    }
+
+    public String getNoteId() {
+        return noteId;
+    }
+
+    public void setNoteId(String noteId) {
+        this.noteId = noteId;
+    }
+
+    public OffsetDateTime getChangedAt() {
+        return changedAt;
+    }
+
+    public void setChangedAt(OffsetDateTime changedAt) {
+        this.changedAt = changedAt;
+    }
+
+    public Note getNote() {
+        return note;
+    }
+
+    public void setNote(Note note) {
+        this.note = note;
+    }
+}
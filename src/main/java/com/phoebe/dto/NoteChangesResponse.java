@@ -0,0 +1,59 @@
+package com.phoebe.dto;
+
+import java.util.Collections;
+import java.util.List;
+
+public class NoteChangesResponse {
+
+    private List<NoteChangeEvent> changes;
+    private long nextSince;
+    private boolean hasMore;
+    private boolean resyncRequired; // since is older than the compaction horizon
+
+    public NoteChangesResponse() {
+    }
+
+    public NoteChangesResponse(List<NoteChangeEvent> changes, long nextSince, boolean hasMore, boolean resyncRequired) {
+        this.changes = changes;
+        this.nextSince = nextSince;
+        this.hasMore = hasMore;
+        this.resyncRequired = resyncRequired;
+    }
+
+    public List<NoteChangeEvent> getChanges() {
+        return changes;
+    }
+
+    public void setChanges(List<NoteChangeEvent> changes) {
+        this.changes = changes;
+    }
+
+    public long getNextSince() {
+        return nextSince;
+    }
+
+    public void setNextSince(long nextSince) {
+        this.nextSince = nextSince;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+
+    public boolean isResyncRequired() {
+        return resyncRequired;
+    }
+
+    public void setResyncRequired(boolean resyncRequired) {
+        this.resyncRequired = resyncRequired;
+    }
+
+    // Client must drop its local copy and replay the feed from since=0
+    public static NoteChangesResponse resync() {
+        return new NoteChangesResponse(Collections.emptyList(), 0, false, true);
+    }
+}
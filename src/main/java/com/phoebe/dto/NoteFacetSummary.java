@@ -0,0 +1,53 @@
+package com.phoebe.dto;
+
+import java.util.List;
+
+public class NoteFacetSummary {
+
+    private long total;
+    private List<FacetCount> sources;
+    private List<FacetCount> tags;
+    private List<FacetCount> months;
+
+    public NoteFacetSummary() {
+    }
+
+    public NoteFacetSummary(long total, List<FacetCount> sources, List<FacetCount> tags, List<FacetCount> months) {
+        this.total = total;
+        this.sources = sources;
+        this.tags = tags;
+        this.months = months;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public void setTotal(long total) {
+        this.total = total;
+    }
+
+    public List<FacetCount> getSources() {
+        return sources;
+    }
+
+    public void setSources(List<FacetCount> sources) {
+        this.sources = sources;
+    }
+
+    public List<FacetCount> getTags() {
+        return tags;
+    }
+
+    public void setTags(List<FacetCount> tags) {
+        this.tags = tags;
+    }
+
+    public List<FacetCount> getMonths() {
+        return months;
+    }
+
+    public void setMonths(List<FacetCount> months) {
+        this.months = months;
+    }
+}
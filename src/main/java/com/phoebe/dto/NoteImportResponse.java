@@ -0,0 +1,41 @@
+package com.phoebe.dto;
+
+public class NoteImportResponse {
+
+    private long imported;
+    private long duplicates; // skipped because the id already exists
+    private long invalid;    // malformed or incomplete lines
+
+    public NoteImportResponse() {
+    }
+
+    public NoteImportResponse(long imported, long duplicates, long invalid) {
+        this.imported = imported;
+        this.duplicates = duplicates;
+        this.invalid = invalid;
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    public void setImported(long imported) {
+        this.imported = imported;
+    }
+
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    public void setDuplicates(long duplicates) {
+        this.duplicates = duplicates;
+    }
+
+    public long getInvalid() {
+        return invalid;
+    }
+
+    public void setInvalid(long invalid) {
+        this.invalid = invalid;
+    }
+}
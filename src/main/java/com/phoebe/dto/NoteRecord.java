@@ -0,0 +1,117 @@
+package com.phoebe.dto;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/**
+ * Full wire representation of a note, with tags as a real array
+ */
+public class NoteRecord {
+
+    private String id;
+    private String userId;
+    private String source;
+    private String title;
+    private String content;
+    private String comment;
+    private List<String> tags;
+    private Integer status;
+    private OffsetDateTime createdAt;
+    private OffsetDateTime ingestedAt;
+
+    public NoteRecord() {
+    }
+
+    public NoteRecord(String id, String userId, String source, String title, String content, String comment, List<String> tags, Integer status, OffsetDateTime createdAt, OffsetDateTime ingestedAt) {
+        this.id = id;
+        this.userId = userId;
+        this.source = source;
+        this.title = title;
+        this.content = content;
+        this.comment = comment;
+        this.tags = tags;
+        this.status = status;
+        this.createdAt = createdAt;
+        this.ingestedAt = ingestedAt;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public void setSource(String source) {
+        this.source = source;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+    }
+
+    public String getComment() {
+        return comment;
+    }
+
+    public void setComment(String comment) {
+        this.comment = comment;
+    }
+
+    public List<String> getTags() {
+        return tags;
+    }
+
+    public void setTags(List<String> tags) {
+        this.tags = tags;
+    }
+
+    public Integer getStatus() {
+        return status;
+    }
+
+    public void setStatus(Integer status) {
+        this.status = status;
+    }
+
+    public OffsetDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(OffsetDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public OffsetDateTime getIngestedAt() {
+        return ingestedAt;
+    }
+
+    public void setIngestedAt(OffsetDateTime ingestedAt) {
+        this.ingestedAt = ingestedAt;
+    }
+}
@@ -1,9 +1,13 @@
 package com.phoebe.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 public class NoteResponse {
 
     private String id;
     private String status;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String duplicateOf; // near-duplicate that was linked to, merged into or rejected
 
     public NoteResponse() {
     }
@@ -29,6 +33,14 @@ public class NoteResponse {
         this.status = status;
     }
 
+    public String getDuplicateOf() {
+        return duplicateOf;
+    }
+
+    public void setDuplicateOf(String duplicateOf) {
+        this.duplicateOf = duplicateOf;
+    }
+
     public static NoteResponse stored(String id) {
         return new NoteResponse(id, "stored");
     }
@@ -0,0 +1,31 @@
+package com.phoebe.dto;
+
+public class RebalanceResponse {
+
+    private long usersMoved;
+    private long notesMoved;
+
+    public RebalanceResponse() {
+    }
+
+    public RebalanceResponse(long usersMoved, long notesMoved) {
+        this.usersMoved = usersMoved;
+        this.notesMoved = notesMoved;
+    }
+
+    public long getUsersMoved() {
+        return usersMoved;
+    }
+
+    public void setUsersMoved(long usersMoved) {
+        this.usersMoved = usersMoved;
+    }
+
+    public long getNotesMoved() {
+        return notesMoved;
+    }
+
+    public void setNotesMoved(long notesMoved) {
+        this.notesMoved = notesMoved;
+    }
+}
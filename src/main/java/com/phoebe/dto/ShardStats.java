@@ -0,0 +1,41 @@
+package com.phoebe.dto;
+
+public class ShardStats {
+
+    private int shard;
+    private long notes;
+    private long activeNotes;
+
+    public ShardStats() {
+    }
+
+    public ShardStats(int shard, long notes, long activeNotes) {
+        this.shard = shard;
+        this.notes = notes;
+        this.activeNotes = activeNotes;
+    }
+
+    public int getShard() {
+        return shard;
+    }
+
+    public void setShard(int shard) {
+        this.shard = shard;
+    }
+
+    public long getNotes() {
+        return notes;
+    }
+
+    public void setNotes(long notes) {
+        this.notes = notes;
+    }
+
+    public long getActiveNotes() {
+        return activeNotes;
+    }
+
+    public void setActiveNotes(long activeNotes) {
+        this.activeNotes = activeNotes;
+    }
+}
@@ -0,0 +1,42 @@
+package com.phoebe.dto;
+
+public class SpanRecord {
+
+    private String name;
+    // Offset from the start of the trace
+    private long startUs;
+    private long durationUs;
+
+    public SpanRecord() {
+    }
+
+    public SpanRecord(String name, long startUs, long durationUs) {
+        this.name = name;
+        this.startUs = startUs;
+        this.durationUs = durationUs;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public long getStartUs() {
+        return startUs;
+    }
+
+    public void setStartUs(long startUs) {
+        this.startUs = startUs;
+    }
+
+    public long getDurationUs() {
+        return durationUs;
+    }
+
+    public void setDurationUs(long durationUs) {
+        this.durationUs = durationUs;
+    }
+}
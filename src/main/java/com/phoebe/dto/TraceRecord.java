@@ -0,0 +1,85 @@
+package com.phoebe.dto;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+public class TraceRecord {
+
+    private String traceId;
+    private String name;
+    private int status;
+    private String outcome;
+    private OffsetDateTime startedAt;
+    private long durationUs;
+    private List<SpanRecord> spans;
+
+    public TraceRecord() {
+    }
+
+    public TraceRecord(String traceId, String name, int status, String outcome, OffsetDateTime startedAt,
+                       long durationUs, List<SpanRecord> spans) {
+        this.traceId = traceId;
+        this.name = name;
+        this.status = status;
+        this.outcome = outcome;
+        this.startedAt = startedAt;
+        this.durationUs = durationUs;
+        this.spans = spans;
+    }
+
+    public String getTraceId() {
+        return traceId;
+    }
+
+    public void setTraceId(String traceId) {
+        this.traceId = traceId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    public String getOutcome() {
+        return outcome;
+    }
+
+    public void setOutcome(String outcome) {
+        this.outcome = outcome;
+    }
+
+    public OffsetDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(OffsetDateTime startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public long getDurationUs() {
+        return durationUs;
+    }
+
+    public void setDurationUs(long durationUs) {
+        this.durationUs = durationUs;
+    }
+
+    public List<SpanRecord> getSpans() {
+        return spans;
+    }
+
+    public void setSpans(List<SpanRecord> spans) {
+        this.spans = spans;
+    }
+}
@@ -1,5 +1,7 @@
 package com.phoebe.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.Transient;
 import org.springframework.data.domain.Persistable;
@@ -44,6 +46,14 @@ public class Note implements Persistable<String> {
     @Column("ingested_at")
     private OffsetDateTime ingestedAt;
 
+    @JsonIgnore
+    @Column("simhash")
+    private Long simhash; // content fingerprint for near-duplicate detection
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @Column("duplicate_of")
+    private String duplicateOf; // id of the note this one is a near-duplicate of
+
     // Note status constants
     public static final int STATUS_DELETED = 0;
     public static final int STATUS_ACTIVE = 1;
@@ -144,6 +154,22 @@ public class Note implements Persistable<String> {
         this.ingestedAt = ingestedAt;
     }
 
+    public Long getSimhash() {
+        return simhash;
+    }
+
+    public void setSimhash(Long simhash) {
+        this.simhash = simhash;
+    }
+
+    public String getDuplicateOf() {
+        return duplicateOf;
+    }
+
+    public void setDuplicateOf(String duplicateOf) {
+        this.duplicateOf = duplicateOf;
+    }
+
     @Override
     public boolean isNew() {
         return isNew;
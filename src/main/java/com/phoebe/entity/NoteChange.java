@@ -0,0 +1,82 @@
+package com.phoebe.entity;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.OffsetDateTime;
+
+@Table("note_changes")
+public class NoteChange {
+
+    @Id
+    @Column("seq")
+    private Long seq; // per user, from note_change_seqs; unique only together with userId
+
+    @Column("user_id")
+    private String userId;
+
+    @Column("note_id")
+    private String noteId;
+
+    @Column("op")
+    private String op; // create / update / delete
+
+    @Column("changed_at")
+    private OffsetDateTime changedAt;
+
+    // Change operation constants
+    public static final String OP_CREATE = "create";
+    public static final String OP_DELETE = "delete";
+    public static final String OP_UPDATE = "update";
+
+    public NoteChange() {
+    }
+
+    public NoteChange(String userId, String noteId, String op, OffsetDateTime changedAt) {
+        this.userId = userId;
+        this.noteId = noteId;
+        this.op = op;
+        this.changedAt = changedAt;
+    }
+
+    public Long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(Long seq) {
+        this.seq = seq;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public String getNoteId() {
+        return noteId;
+    }
+
+    public void setNoteId(String noteId) {
+        this.noteId = noteId;
+    }
+
+    public String getOp() {
+        return op;
+    }
+
+    public void setOp(String op) {
+        this.op = op;
+    }
+
+    public OffsetDateTime getChangedAt() {
+        return changedAt;
+    }
+
+    public void setChangedAt(OffsetDateTime changedAt) {
+        this.changedAt = changedAt;
+    }
+}
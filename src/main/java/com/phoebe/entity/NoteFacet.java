@@ -0,0 +1,71 @@
+package com.phoebe.entity;
+
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+/**
+ * Active note count of one user for one source, tag or month (yyyy-MM, UTC).
+ * Also used as a delta when counters are updated.
+ */
+@Table("note_facets")
+public class NoteFacet {
+
+    @Column("user_id")
+    private String userId;
+
+    @Column("facet")
+    private String facet; // source / tag / month
+
+    @Column("facet_value")
+    private String value;
+
+    @Column("note_count")
+    private long count;
+
+    // Facet constants
+    public static final String FACET_SOURCE = "source";
+    public static final String FACET_TAG = "tag";
+    public static final String FACET_MONTH = "month";
+
+    public NoteFacet() {
+    }
+
+    public NoteFacet(String userId, String facet, String value, long count) {
+        this.userId = userId;
+        this.facet = facet;
+        this.value = value;
+        this.count = count;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public String getFacet() {
+        return facet;
+    }
+
+    public void setFacet(String facet) {
+        this.facet = facet;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public void setValue(String value) {
+        this.value = value;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+}
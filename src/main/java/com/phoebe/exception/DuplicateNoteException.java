@@ -0,0 +1,20 @@
+package com.phoebe.exception;
+
+/**
+ * A new note is a near-duplicate of an existing active note and the dedup policy rejects it
+ */
+public class DuplicateNoteException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String duplicateOf;
+
+    public DuplicateNoteException(String duplicateOf) {
+        super("Near-duplicate of note " + duplicateOf);
+        this.duplicateOf = duplicateOf;
+    }
+
+    public String getDuplicateOf() {
+        return duplicateOf;
+    }
+}
@@ -2,11 +2,13 @@ package com.phoebe.exception;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.bind.support.WebExchangeBindException;
+import org.springframework.web.method.annotation.HandlerMethodValidationException;
 import reactor.core.publisher.Mono;
 
 import java.util.HashMap;
@@ -30,6 +32,38 @@ public class GlobalExceptionHandler {
         return Mono.just(ResponseEntity.badRequest().body(errors));
     }
 
+    @ExceptionHandler(HandlerMethodValidationException.class)
+    public Mono<ResponseEntity<Map<String, Object>>> handleParameterValidation(HandlerMethodValidationException ex) {
+        Map<String, Object> errors = new HashMap<>();
+        errors.put("error", "Validation failed");
+        errors.put("details", ex.getAllValidationResults().stream()
+                .collect(Collectors.toMap(
+                        result -> result.getMethodParameter().getParameterName(),
+                        result -> result.getResolvableErrors().stream()
+                                .map(error -> error.getDefaultMessage() != null ? error.getDefaultMessage() : "Invalid value")
+                                .collect(Collectors.joining("; ")),
+                        (first, second) -> first)));
+        return Mono.just(ResponseEntity.badRequest().body(errors));
+    }
+
+    @ExceptionHandler(DuplicateNoteException.class)
+    public Mono<ResponseEntity<Map<String, Object>>> handleDuplicateNote(DuplicateNoteException ex) {
+        Map<String, Object> error = new HashMap<>();
+        error.put("error", "Duplicate note");
+        error.put("duplicateOf", ex.getDuplicateOf());
+        return Mono.just(ResponseEntity.status(HttpStatus.CONFLICT).body(error));
+    }
+
+    @ExceptionHandler(UserMovingException.class)
+    public Mono<ResponseEntity<Map<String, Object>>> handleUserMoving(UserMovingException ex) {
+        Map<String, Object> error = new HashMap<>();
+        error.put("error", "User is being moved");
+        error.put("message", ex.getMessage());
+        return Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(error));
+    }
+
     @ExceptionHandler(Exception.class)
     public Mono<ResponseEntity<Map<String, Object>>> handleGenericException(Exception ex) {
         log.error("Unexpected error", ex);
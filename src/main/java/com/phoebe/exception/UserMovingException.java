@@ -0,0 +1,13 @@
+package com.phoebe.exception;
+
+/**
+ * A shard rebalance is moving the user's notes, so writes for the user are refused until it finishes
+ */
+public class UserMovingException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public UserMovingException(String userId) {
+        super("Notes of user " + userId + " are being moved to another shard, retry shortly");
+    }
+}
@@ -0,0 +1,12 @@
+package com.phoebe.repository;
+
+import com.phoebe.entity.Note;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+public interface NoteBatchRepository {
+
+    // Insert many notes in one batched statement
+    Mono<Long> insertAll(List<Note> notes);
+}
@@ -0,0 +1,68 @@
+package com.phoebe.repository;
+
+import com.phoebe.entity.Note;
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Statement;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+class NoteBatchRepositoryImpl implements NoteBatchRepository {
+
+    private static final String INSERT_SQL = "INSERT INTO notes "
+            + "(id, user_id, source, title, content, comment, tags, status, created_at, ingested_at, simhash, duplicate_of) "
+            + "VALUES ($1, $2, $3, $4, $5, $6, $7, $8, $9, $10, $11, $12)";
+
+    private final DatabaseClient databaseClient;
+
+    NoteBatchRepositoryImpl(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    @Override
+    public Mono<Long> insertAll(List<Note> notes) {
+        if (notes.isEmpty()) {
+            return Mono.just(0L);
+        }
+        return databaseClient.inConnectionMany(connection -> {
+                    Statement statement = connection.createStatement(INSERT_SQL);
+                    for (int i = 0; i < notes.size(); i++) {
+                        if (i > 0) {
+                            statement.add();
+                        }
+                        bind(statement, notes.get(i));
+                    }
+                    return Flux.from(statement.execute()).flatMap(Result::getRowsUpdated);
+                })
+                .reduce(0L, Long::sum);
+    }
+
+    private static void bind(Statement statement, Note note) {
+        statement.bind(0, note.getId());
+        statement.bind(1, note.getUserId());
+        statement.bind(2, note.getSource());
+        bindNullable(statement, 3, note.getTitle());
+        statement.bind(4, note.getContent());
+        bindNullable(statement, 5, note.getComment());
+        bindNullable(statement, 6, note.getTags());
+        statement.bind(7, note.getStatus());
+        statement.bind(8, note.getCreatedAt());
+        statement.bind(9, note.getIngestedAt());
+        if (note.getSimhash() == null) {
+            statement.bindNull(10, Long.class);
+        } else {
+            statement.bind(10, note.getSimhash());
+        }
+        bindNullable(statement, 11, note.getDuplicateOf());
+    }
+
+    private static void bindNullable(Statement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index, String.class);
+        } else {
+            statement.bind(index, value);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.phoebe.repository;
+
+import com.phoebe.entity.NoteChange;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+public interface NoteChangeBatchRepository {
+
+    // Append changes in one batched statement, numbering them from each user's sequence.
+    // Must run in the note write's transaction: the user's sequence row stays locked until it commits.
+    Mono<Long> insertAll(List<NoteChange> changes);
+
+    // Make every seq handed out to the user from now on larger than the given one
+    Mono<Void> raiseSeqFloor(String userId, long seq);
+
+    // Mark the user as being moved off, or moved off, this shard. Waits for the user's running writes
+    // through the sequence row lock; later writes see the state and fail with UserMovingException.
+    Mono<Void> setMoveState(String userId, String state);
+}
@@ -0,0 +1,122 @@
+package com.phoebe.repository;
+
+import com.phoebe.entity.NoteChange;
+import com.phoebe.exception.UserMovingException;
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Statement;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+class NoteChangeBatchRepositoryImpl implements NoteChangeBatchRepository {
+
+    private static final String INSERT_SQL = "INSERT INTO note_changes (user_id, seq, note_id, op, changed_at) "
+            + "VALUES ($1, $2, $3, $4, $5)";
+
+    private final DatabaseClient databaseClient;
+
+    NoteChangeBatchRepositoryImpl(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    @Override
+    public Mono<Long> insertAll(List<NoteChange> changes) {
+        if (changes.isEmpty()) {
+            return Mono.just(0L);
+        }
+        // Users in a fixed order, so two batches spanning the same users lock their sequences in the same order
+        Map<String, List<NoteChange>> byUser = new TreeMap<>();
+        for (NoteChange change : changes) {
+            byUser.computeIfAbsent(change.getUserId(), userId -> new ArrayList<>()).add(change);
+        }
+        return Flux.fromIterable(byUser.entrySet())
+                .concatMap(entry -> allocate(entry.getKey(), entry.getValue().size())
+                        .doOnNext(lastSeq -> {
+                            long seq = lastSeq - entry.getValue().size();
+                            for (NoteChange change : entry.getValue()) {
+                                change.setSeq(++seq);
+                            }
+                        }))
+                .then(databaseClient.inConnectionMany(connection -> {
+                            Statement statement = connection.createStatement(INSERT_SQL);
+                            for (int i = 0; i < changes.size(); i++) {
+                                if (i > 0) {
+                                    statement.add();
+                                }
+                                NoteChange change = changes.get(i);
+                                statement.bind(0, change.getUserId())
+                                        .bind(1, change.getSeq())
+                                        .bind(2, change.getNoteId())
+                                        .bind(3, change.getOp())
+                                        .bind(4, change.getChangedAt());
+                            }
+                            return Flux.from(statement.execute()).flatMap(Result::getRowsUpdated);
+                        })
+                        .reduce(0L, Long::sum));
+    }
+
+    @Override
+    public Mono<Void> raiseSeqFloor(String userId, long seq) {
+        return databaseClient.sql("UPDATE note_change_seqs SET last_seq = GREATEST(last_seq, :seq) WHERE user_id = :userId")
+                .bind("seq", seq)
+                .bind("userId", userId)
+                .fetch()
+                .rowsUpdated()
+                .flatMap(updated -> updated > 0 ? Mono.just(updated) : insertSeq(userId, seq))
+                .then();
+    }
+
+    @Override
+    public Mono<Void> setMoveState(String userId, String state) {
+        return databaseClient.sql("UPDATE note_change_seqs SET move_state = :state WHERE user_id = :userId")
+                .bind("state", state)
+                .bind("userId", userId)
+                .fetch()
+                .rowsUpdated()
+                .flatMap(updated -> updated > 0 ? Mono.just(updated) : databaseClient.sql(
+                                "INSERT INTO note_change_seqs (user_id, last_seq, purged_through_seq, move_state) "
+                                        + "VALUES (:userId, 0, 0, :state)")
+                        .bind("userId", userId)
+                        .bind("state", state)
+                        .fetch()
+                        .rowsUpdated())
+                .then();
+    }
+
+    /**
+     * Reserve count seqs for the user and return the last one. The increment locks the user's row until commit,
+     * so a concurrent writer of the same user waits and gets the next seqs only after this transaction is visible.
+     * Two first writes of a user both insert the row; the loser fails with a DataIntegrityViolationException
+     * and must retry its transaction. Fails with UserMovingException once a rebalance has marked the user.
+     */
+    private Mono<Long> allocate(String userId, int count) {
+        return databaseClient.sql("UPDATE note_change_seqs SET last_seq = last_seq + :count WHERE user_id = :userId")
+                .bind("count", (long) count)
+                .bind("userId", userId)
+                .fetch()
+                .rowsUpdated()
+                .flatMap(updated -> updated > 0 ? Mono.just(updated) : insertSeq(userId, count))
+                .then(databaseClient.sql("SELECT last_seq, move_state FROM note_change_seqs WHERE user_id = :userId")
+                        .bind("userId", userId)
+                        .map(row -> row.get("move_state", String.class) != null
+                                ? Mono.<Long>error(new UserMovingException(userId))
+                                : Mono.just(row.get("last_seq", Long.class)))
+                        .one()
+                        .flatMap(Function.identity()));
+    }
+
+    private Mono<Long> insertSeq(String userId, long lastSeq) {
+        return databaseClient.sql("INSERT INTO note_change_seqs (user_id, last_seq, purged_through_seq) "
+                        + "VALUES (:userId, :lastSeq, 0)")
+                .bind("userId", userId)
+                .bind("lastSeq", lastSeq)
+                .fetch()
+                .rowsUpdated();
+    }
+}
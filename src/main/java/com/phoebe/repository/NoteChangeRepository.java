@@ -0,0 +1,58 @@
+package com.phoebe.repository;
+
+import com.phoebe.entity.NoteChange;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+
+/**
+ * Change feed queries. seq is unique only per user, so there are no by-id CRUD methods:
+ * every statement names the user or works across all users.
+ */
+@Repository
+public interface NoteChangeRepository extends org.springframework.data.repository.Repository<NoteChange, Long>,
+        NoteChangeBatchRepository {
+
+    // Deltas for one user after a given seq, oldest first
+    @Query("SELECT * FROM note_changes WHERE user_id = :userId AND seq > :since ORDER BY seq LIMIT :limit")
+    Flux<NoteChange> findByUserIdAfter(String userId, long since, int limit);
+
+    @Modifying
+    @Query("DELETE FROM note_changes WHERE user_id = :userId")
+    Mono<Integer> deleteByUserId(String userId);
+
+    // Latest seq of each given user that has any change (used by the instance poller)
+    @Query("SELECT user_id, last_seq FROM note_change_seqs WHERE user_id IN (:userIds)")
+    Flux<NoteChangeSeq> findLastSeqs(Collection<String> userIds);
+
+    @Query("SELECT COALESCE(MAX(last_seq), 0) FROM note_change_seqs WHERE user_id = :userId")
+    Mono<Long> findLastSeq(String userId);
+
+    // Drop every change superseded by a newer change to the same note
+    @Modifying
+    @Query("DELETE FROM note_changes WHERE seq < (SELECT MAX(n.seq) FROM note_changes n "
+            + "WHERE n.user_id = note_changes.user_id AND n.note_id = note_changes.note_id)")
+    Mono<Integer> deleteSuperseded();
+
+    // Move each user's purge horizon up to their newest tombstone older than the cutoff
+    @Modifying
+    @Query("UPDATE note_change_seqs SET purged_through_seq = GREATEST(purged_through_seq, "
+            + "(SELECT MAX(c.seq) FROM note_changes c WHERE c.user_id = note_change_seqs.user_id "
+            + "AND c.op = 'delete' AND c.changed_at < :cutoff)) "
+            + "WHERE EXISTS (SELECT 1 FROM note_changes c WHERE c.user_id = note_change_seqs.user_id "
+            + "AND c.op = 'delete' AND c.changed_at < :cutoff)")
+    Mono<Integer> advanceHorizons(OffsetDateTime cutoff);
+
+    @Modifying
+    @Query("DELETE FROM note_changes WHERE op = 'delete' AND seq <= (SELECT s.purged_through_seq "
+            + "FROM note_change_seqs s WHERE s.user_id = note_changes.user_id)")
+    Mono<Integer> deletePurgedTombstones();
+
+    @Query("SELECT COALESCE(MAX(purged_through_seq), 0) FROM note_change_seqs WHERE user_id = :userId")
+    Mono<Long> findHorizon(String userId);
+}
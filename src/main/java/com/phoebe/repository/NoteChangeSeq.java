@@ -0,0 +1,27 @@
+package com.phoebe.repository;
+
+/**
+ * A user's change feed sequence; a class rather than an interface projection because
+ * last_seq is not a property of the repository's entity
+ */
+public class NoteChangeSeq {
+
+    private String userId;
+    private long lastSeq;
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public long getLastSeq() {
+        return lastSeq;
+    }
+
+    public void setLastSeq(long lastSeq) {
+        this.lastSeq = lastSeq;
+    }
+}
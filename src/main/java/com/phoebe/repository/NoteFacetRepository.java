@@ -0,0 +1,143 @@
+package com.phoebe.repository;
+
+import com.phoebe.entity.Note;
+import com.phoebe.entity.NoteFacet;
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Statement;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Facet counters; the table has a composite key, so it is accessed through DatabaseClient
+ */
+@Repository
+public class NoteFacetRepository {
+
+    // Rows are always locked in this order, so concurrent writers of the same user cannot deadlock
+    private static final Comparator<NoteFacet> KEY_ORDER = Comparator.comparing(NoteFacet::getFacet)
+            .thenComparing(NoteFacet::getValue);
+
+    private static final String INCREMENT_SQL = "UPDATE note_facets SET note_count = note_count + $1 "
+            + "WHERE user_id = $2 AND facet = $3 AND facet_value = $4";
+    private static final String INSERT_SQL = "INSERT INTO note_facets (user_id, facet, facet_value, note_count) "
+            + "VALUES ($1, $2, $3, $4)";
+
+    private final DatabaseClient databaseClient;
+
+    public NoteFacetRepository(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    /**
+     * Add deltas to the counters in two batched statements: increment existing rows, then insert the missing ones.
+     * Two transactions inserting the same new row conflict on the primary key; the loser fails with
+     * a DataIntegrityViolationException and must retry its transaction, which then takes the increment path.
+     */
+    public Mono<Void> applyDeltas(List<NoteFacet> deltas) {
+        if (deltas.isEmpty()) {
+            return Mono.empty();
+        }
+        List<NoteFacet> sorted = deltas.stream().sorted(KEY_ORDER).collect(Collectors.toList());
+        return databaseClient.inConnectionMany(connection -> {
+                    Statement statement = connection.createStatement(INCREMENT_SQL);
+                    for (int i = 0; i < sorted.size(); i++) {
+                        if (i > 0) {
+                            statement.add();
+                        }
+                        NoteFacet delta = sorted.get(i);
+                        statement.bind(0, delta.getCount())
+                                .bind(1, delta.getUserId())
+                                .bind(2, delta.getFacet())
+                                .bind(3, delta.getValue());
+                    }
+                    // One result per binding, in binding order
+                    return Flux.from(statement.execute()).concatMap(Result::getRowsUpdated);
+                })
+                .collectList()
+                .flatMap(updated -> {
+                    List<NoteFacet> missing = new ArrayList<>();
+                    for (int i = 0; i < sorted.size(); i++) {
+                        // A missing row can only gain counts; a negative delta there means the counters
+                        // are already off, which the repair job fixes
+                        if (updated.get(i) == 0 && sorted.get(i).getCount() > 0) {
+                            missing.add(sorted.get(i));
+                        }
+                    }
+                    return insertAll(missing);
+                })
+                .then();
+    }
+
+    public Mono<Long> insertAll(List<NoteFacet> facets) {
+        if (facets.isEmpty()) {
+            return Mono.just(0L);
+        }
+        return databaseClient.inConnectionMany(connection -> {
+                    Statement statement = connection.createStatement(INSERT_SQL);
+                    for (int i = 0; i < facets.size(); i++) {
+                        if (i > 0) {
+                            statement.add();
+                        }
+                        NoteFacet facet = facets.get(i);
+                        statement.bind(0, facet.getUserId())
+                                .bind(1, facet.getFacet())
+                                .bind(2, facet.getValue())
+                                .bind(3, facet.getCount());
+                    }
+                    return Flux.from(statement.execute()).flatMap(Result::getRowsUpdated);
+                })
+                .reduce(0L, Long::sum);
+    }
+
+    public Flux<NoteFacet> findByUserId(String userId) {
+        return databaseClient.sql("SELECT facet, facet_value, note_count FROM note_facets "
+                        + "WHERE user_id = :userId AND note_count > 0")
+                .bind("userId", userId)
+                .map(row -> new NoteFacet(userId, row.get("facet", String.class), row.get("facet_value", String.class),
+                        row.get("note_count", Long.class)))
+                .all();
+    }
+
+    public Mono<Long> deleteByUserId(String userId) {
+        return databaseClient.sql("DELETE FROM note_facets WHERE user_id = :userId")
+                .bind("userId", userId)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    /**
+     * Drop counters of users that no longer have any notes on this shard
+     */
+    public Mono<Long> deleteOrphans() {
+        return databaseClient.sql("DELETE FROM note_facets WHERE user_id NOT IN (SELECT DISTINCT user_id FROM notes)")
+                .fetch()
+                .rowsUpdated();
+    }
+
+    /**
+     * Only the columns facets are derived from, for recomputing a user's counters
+     */
+    public Flux<Note> findActiveFacetFields(String userId) {
+        return databaseClient.sql("SELECT source, tags, created_at FROM notes WHERE user_id = :userId AND status = :status")
+                .bind("userId", userId)
+                .bind("status", Note.STATUS_ACTIVE)
+                .map(row -> {
+                    Note note = new Note();
+                    note.setUserId(userId);
+                    note.setSource(row.get("source", String.class));
+                    note.setTags(row.get("tags", String.class));
+                    note.setCreatedAt(row.get("created_at", OffsetDateTime.class));
+                    note.setStatus(Note.STATUS_ACTIVE);
+                    return note;
+                })
+                .all();
+    }
+}
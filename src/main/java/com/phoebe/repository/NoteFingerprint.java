@@ -0,0 +1,11 @@
+package com.phoebe.repository;
+
+/**
+ * Projection of a note onto its content fingerprint
+ */
+public interface NoteFingerprint {
+
+    String getId();
+
+    Long getSimhash();
+}
@@ -1,6 +1,9 @@
 package com.phoebe.repository;
 
 import com.phoebe.entity.Note;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
@@ -9,11 +12,14 @@ import reactor.core.publisher.Mono;
 import java.time.OffsetDateTime;
 
 @Repository
-public interface NoteRepository extends ReactiveCrudRepository<Note, String> {
+public interface NoteRepository extends ReactiveCrudRepository<Note, String>, NoteBatchRepository {
 
     // Query by userId and status (active notes only)
     Flux<Note> findByUserIdAndStatus(String userId, Integer status);
 
+    // Query all notes for a user regardless of status
+    Flux<Note> findByUserId(String userId);
+
     // Query all active notes for a user
     default Flux<Note> findActiveByUserId(String userId) {
         return findByUserIdAndStatus(userId, 1);
@@ -34,6 +40,51 @@ public interface NoteRepository extends ReactiveCrudRepository<Note, String> {
     // Find a specific note by id and userId (for ownership verification)
     Mono<Note> findByIdAndUserId(String id, String userId);
 
+    // Same, locking the row until the transaction ends so concurrent merges and deletes see each other's writes
+    @Query("SELECT * FROM notes WHERE id = :id AND user_id = :userId FOR UPDATE")
+    Mono<Note> findByIdAndUserIdForUpdate(String id, String userId);
+
+    // Soft delete; only matches while the note is still active
+    @Modifying
+    @Query("UPDATE notes SET status = 0 WHERE id = :id AND user_id = :userId AND status = 1")
+    Mono<Integer> markDeleted(String id, String userId);
+
+    // Content fingerprints of a user's active notes, for the near-duplicate index
+    @Query("SELECT id, simhash FROM notes WHERE user_id = :userId AND status = 1 AND simhash IS NOT NULL")
+    Flux<NoteFingerprint> findActiveFingerprints(String userId);
+
+    // Active notes stored before fingerprints existed, a batch at a time for the backfill
+    Flux<Note> findByStatusAndSimhashIsNull(Integer status, Limit limit);
+
+    @Modifying
+    @Query("UPDATE notes SET simhash = :simhash WHERE id = :id AND simhash IS NULL")
+    Mono<Integer> setSimhash(String id, Long simhash);
+
+    // Fold a near-duplicate into an existing note; only matches while the note is still active
+    @Modifying
+    @Query("UPDATE notes SET title = :title, content = :content, comment = :comment, tags = :tags, "
+            + "simhash = :simhash, ingested_at = :ingestedAt WHERE id = :id AND user_id = :userId AND status = 1")
+    Mono<Integer> mergeActive(String id, String userId, String title, String content, String comment,
+                              String tags, Long simhash, OffsetDateTime ingestedAt);
+
+    // Admin queries, newest first so per-shard results can be merge-sorted
+    Flux<Note> findByStatusOrderByCreatedAtDesc(Integer status, Limit limit);
+
+    Flux<Note> findBySourceAndStatusOrderByCreatedAtDesc(String source, Integer status, Limit limit);
+
+    Flux<Note> findByCreatedAtBetweenAndStatusOrderByCreatedAtDesc(OffsetDateTime start, OffsetDateTime end, Integer status,
+                                                                   Limit limit);
+
+    Mono<Long> countByStatus(Integer status);
+
+    // Users stored on the current shard (used for rebalancing)
+    @Query("SELECT DISTINCT user_id FROM notes")
+    Flux<String> findDistinctUserIds();
+
+    @Modifying
+    @Query("DELETE FROM notes WHERE user_id = :userId")
+    Mono<Integer> deleteByUserId(String userId);
+
     // Legacy methods (deprecated, prefer status-aware methods)
     @Deprecated
     Flux<Note> findBySource(String source);
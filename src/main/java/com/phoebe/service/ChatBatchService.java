@@ -0,0 +1,215 @@
+package com.phoebe.service;
+
+import com.alibaba.dashscope.aigc.generation.GenerationResult;
+import com.alibaba.dashscope.aigc.generation.GenerationUsage;
+import com.alibaba.dashscope.common.Status;
+import com.alibaba.dashscope.exception.ApiException;
+import com.phoebe.config.ChatBatchConfig;
+import com.phoebe.config.DashScopeConfig;
+import com.phoebe.dto.ChatBatchResult;
+import com.phoebe.dto.ChatBatchSummary;
+import com.phoebe.dto.ChatRequest;
+import com.phoebe.dto.ChatUsage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs many prompts as non-streaming DashScope calls.
+ * <p>
+ * Each batch keeps a bounded number of calls in flight, and all batches share a scheduler with
+ * maxConcurrency threads, so concurrent batches cannot exceed it either. Call timeouts are enforced by
+ * the DashScope connection, so a timed-out attempt is over before it is retried. Throttled, failed-over,
+ * timed-out and network-failed calls are retried with exponential backoff; a prompt that still fails
+ * yields an error result and does not stop the batch.
+ */
+@Service
+public class ChatBatchService implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatBatchService.class);
+    private static final String SPAN_CALL = "dashscope.call";
+
+    private final ChatGenerator generator;
+    private final ChatBatchConfig config;
+    private final DashScopeConfig dashScopeConfig;
+    private final Scheduler scheduler;
+
+    public ChatBatchService(ChatGenerator generator, ChatBatchConfig config, DashScopeConfig dashScopeConfig) {
+        this.generator = generator;
+        this.config = config;
+        this.dashScopeConfig = dashScopeConfig;
+        this.scheduler = Schedulers.newBoundedElastic(Math.max(1, config.getMaxConcurrency()),
+                Integer.MAX_VALUE, "chat-batch");
+    }
+
+    /**
+     * Results in completion order, followed by one summary result
+     *
+     * @param concurrency calls in flight for this batch, at most the configured concurrency; null for that default
+     */
+    public Flux<ChatBatchResult> run(Flux<ChatRequest> prompts, Integer concurrency) {
+        int parallelism = Math.max(1, concurrency != null
+                ? Math.min(config.getConcurrency(), concurrency) : config.getConcurrency());
+        int maxPrompts = Math.max(0, config.getMaxPrompts());
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            BatchTotals totals = new BatchTotals();
+            log.info("Starting batch chat, concurrency: {}", parallelism);
+            // One prompt past the cap is read to report the overflow, then the request body is no longer consumed
+            return prompts.index()
+                    .take(maxPrompts + 1L)
+                    .flatMap(indexed -> indexed.getT1() < maxPrompts
+                            ? execute(indexed.getT1().intValue(), indexed.getT2())
+                            : Mono.just(ChatBatchResult.failure(indexed.getT1().intValue(),
+                                    indexed.getT2().getSessionId(), "Batch is limited to " + maxPrompts
+                                            + " prompts, the remaining prompts were not run", 0, 0)),
+                            parallelism)
+                    .doOnNext(totals::add)
+                    .concatWith(Mono.fromSupplier(() -> {
+                        ChatBatchSummary summary = totals.toSummary(elapsedMs(start));
+                        log.info("Batch chat completed, total: {}, succeeded: {}, failed: {}, tokens: {}",
+                                summary.getTotal(), summary.getSucceeded(), summary.getFailed(),
+                                summary.getUsage().getTotalTokens());
+                        return ChatBatchResult.summary(summary);
+                    }))
+                    .doOnCancel(() -> log.info("Batch chat cancelled after {} results", totals.total.get()));
+        });
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.dispose();
+    }
+
+    private Mono<ChatBatchResult> execute(int index, ChatRequest request) {
+        String sessionId = request.getSessionId();
+        if (request.getMessage() == null || request.getMessage().isBlank()) {
+            return Mono.just(ChatBatchResult.failure(index, sessionId, "Message is required", 0, 0));
+        }
+
+        AtomicInteger attempts = new AtomicInteger();
+        long start = System.nanoTime();
+        Mono<GenerationResult> attempt = Mono.fromCallable(() -> {
+                    attempts.incrementAndGet();
+                    return generator.generate(request.getMessage());
+                })
+                .subscribeOn(scheduler);
+        return Trace.span(SPAN_CALL, attempt)
+                .retryWhen(Retry.backoff(config.getMaxRetries(), Duration.ofMillis(config.getRetryBackoffMs()))
+                        .filter(ChatBatchService::isRetryable)
+                        .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+                .map(result -> toResult(index, sessionId, result, attempts.get(), elapsedMs(start)))
+                .onErrorResume(e -> {
+                    log.warn("Batch prompt {} failed after {} attempts: {}", index, attempts.get(), e.toString());
+                    return Mono.just(ChatBatchResult.failure(index, sessionId, errorMessage(e),
+                            attempts.get(), elapsedMs(start)));
+                });
+    }
+
+    private ChatBatchResult toResult(int index, String sessionId, GenerationResult result,
+                                     int attempts, long durationMs) {
+        StringBuilder content = new StringBuilder();
+        String finishReason = null;
+        if (result.getOutput() != null && result.getOutput().getChoices() != null) {
+            for (var choice : result.getOutput().getChoices()) {
+                if (choice.getMessage() != null && choice.getMessage().getContent() != null) {
+                    content.append(choice.getMessage().getContent());
+                }
+                if (choice.getFinishReason() != null) {
+                    finishReason = choice.getFinishReason();
+                }
+            }
+        }
+        return ChatBatchResult.success(index, sessionId, content.toString(), finishReason,
+                toUsage(result.getUsage()), attempts, durationMs);
+    }
+
+    private static ChatUsage toUsage(GenerationUsage usage) {
+        if (usage == null) {
+            return new ChatUsage();
+        }
+        long input = usage.getInputTokens() != null ? usage.getInputTokens() : 0;
+        long output = usage.getOutputTokens() != null ? usage.getOutputTokens() : 0;
+        long total = usage.getTotalTokens() != null ? usage.getTotalTokens() : input + output;
+        return new ChatUsage(input, output, total);
+    }
+
+    static boolean isRetryable(Throwable e) {
+        if (isTimeout(e)) {
+            return true;
+        }
+        if (e instanceof ApiException) {
+            Status status = ((ApiException) e).getStatus();
+            // No HTTP status (the SDK reports -1) means the request failed before DashScope answered
+            return status == null || status.getStatusCode() <= 0
+                    || status.getStatusCode() == 429 || status.getStatusCode() >= 500;
+        }
+        return false;
+    }
+
+    private String errorMessage(Throwable e) {
+        if (isTimeout(e)) {
+            return "DashScope call timed out after " + dashScopeConfig.getTimeoutSeconds() + "s";
+        }
+        if (e instanceof ApiException && ((ApiException) e).getStatus() != null
+                && ((ApiException) e).getStatus().getMessage() != null) {
+            return ((ApiException) e).getStatus().getMessage();
+        }
+        return e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+    }
+
+    /**
+     * The SDK wraps a connect or read timeout of the HTTP client in an ApiException
+     */
+    private static boolean isTimeout(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof InterruptedIOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    private static final class BatchTotals {
+
+        private final AtomicLong total = new AtomicLong();
+        private final AtomicLong succeeded = new AtomicLong();
+        private final AtomicLong retries = new AtomicLong();
+        private final AtomicLong inputTokens = new AtomicLong();
+        private final AtomicLong outputTokens = new AtomicLong();
+        private final AtomicLong totalTokens = new AtomicLong();
+
+        void add(ChatBatchResult result) {
+            total.incrementAndGet();
+            retries.addAndGet(Math.max(0, result.getAttempts() - 1));
+            if (result.getError() == null) {
+                succeeded.incrementAndGet();
+                inputTokens.addAndGet(result.getUsage().getInputTokens());
+                outputTokens.addAndGet(result.getUsage().getOutputTokens());
+                totalTokens.addAndGet(result.getUsage().getTotalTokens());
+            }
+        }
+
+        ChatBatchSummary toSummary(long durationMs) {
+            ChatUsage usage = new ChatUsage(inputTokens.get(), outputTokens.get(), totalTokens.get());
+            return new ChatBatchSummary(total.get(), succeeded.get(), total.get() - succeeded.get(),
+                    retries.get(), usage, durationMs);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.phoebe.service;
+
+import com.alibaba.dashscope.aigc.generation.GenerationResult;
+import com.alibaba.dashscope.exception.InputRequiredException;
+import com.alibaba.dashscope.exception.NoApiKeyException;
+
+/**
+ * A non-streaming DashScope call that blocks until the complete result arrives
+ */
+@FunctionalInterface
+interface ChatGenerator {
+
+    GenerationResult generate(String message) throws NoApiKeyException, InputRequiredException;
+}
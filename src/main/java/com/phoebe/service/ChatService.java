@@ -9,104 +9,196 @@ import com.alibaba.dashscope.exception.InputRequiredException;
 import com.alibaba.dashscope.exception.NoApiKeyException;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.phoebe.config.ChatStreamConfig;
 import com.phoebe.config.DashScopeConfig;
+import com.phoebe.dto.ChatBufferStats;
 import com.phoebe.dto.ChatRequest;
 import io.reactivex.Flowable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
-import reactor.core.publisher.Sinks;
+import reactor.core.publisher.FluxSink;
 
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 @Service
-public class ChatService {
+public class ChatService implements ChatGenerator, DisposableBean {
 
     private static final Logger log = LoggerFactory.getLogger(ChatService.class);
+    private static final String SPAN_EXECUTOR_QUEUE = "chat.executor_queue";
+    private static final String SPAN_BUILD_PARAM = "chat.build_param";
+    private static final String SPAN_FIRST_TOKEN = "dashscope.first_token";
+    private static final String SPAN_STREAMING = "dashscope.streaming";
+    private static final String SPAN_SSE_FLUSH = "chat.sse_flush";
 
     private final DashScopeConfig dashScopeConfig;
+    private final ChatStreamConfig streamConfig;
+    private final ChatStreamBudget streamBudget;
     private final ObjectMapper objectMapper;
-    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Generation generation;
+    private final ThreadPoolExecutor executor;
 
-    public ChatService(DashScopeConfig dashScopeConfig, ObjectMapper objectMapper) {
+    public ChatService(DashScopeConfig dashScopeConfig, ChatStreamConfig streamConfig,
+                       ChatStreamBudget streamBudget, ObjectMapper objectMapper, Generation generation) {
         this.dashScopeConfig = dashScopeConfig;
+        this.streamConfig = streamConfig;
+        this.streamBudget = streamBudget;
         this.objectMapper = objectMapper;
+        this.generation = generation;
+        // 每个流在读取期间（包括 pause 策略暂停时）占用一个线程，线程数和排队数都有上限
+        int threads = Math.max(1, streamConfig.getMaxConcurrentStreams());
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(Math.max(1, streamConfig.getMaxQueuedStreams())),
+                new CustomizableThreadFactory("chat-stream-"));
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void destroy() {
+        // 中断仍在读取或暂停中的流
+        executor.shutdownNow();
     }
 
     public Flux<ServerSentEvent<String>> streamChat(ChatRequest request) {
         log.info("Starting stream chat with DashScope SDK, sessionId: {}, message length: {}",
                 request.getSessionId(), request.getMessage().length());
 
-        // 创建 Sink 用于桥接 RxJava Flowable 和 Reactor Flux
-        Sinks.Many<ServerSentEvent<String>> sink = Sinks.many().unicast().onBackpressureBuffer();
-
-        // 异步执行 DashScope 调用
-        CompletableFuture.runAsync(() -> {
-            try {
-                executeStreamCall(request, sink);
-            } catch (Exception e) {
-                log.error("Error during stream chat", e);
-                sink.tryEmitNext(buildErrorEvent(e.getMessage()));
-                sink.tryEmitComplete();
-            }
-        }, executor);
+        // 有界缓冲区桥接 RxJava Flowable 和 Reactor Flux，只在客户端有需求时下发事件
+        ChatStreamBuffer buffer = new ChatStreamBuffer(request.getSessionId(), streamConfig, streamBudget,
+                this::buildTokenEvent, this::buildErrorEvent);
 
-        return sink.asFlux()
+        return Flux.deferContextual(context -> {
+                    Trace trace = Trace.current(context);
+                    return Flux.<ServerSentEvent<String>>create(sink -> {
+                                buffer.attach(sink);
+                                // 订阅后再异步执行 DashScope 调用
+                                long submitted = System.nanoTime();
+                                try {
+                                    executor.execute(() -> readStream(request, buffer, trace, submitted));
+                                } catch (RejectedExecutionException e) {
+                                    // 线程和排队都已满，直接拒绝而不是无限创建线程
+                                    log.warn("Rejected stream chat, {} streams running and {} queued",
+                                            executor.getActiveCount(), executor.getQueue().size());
+                                    buffer.offerEvent(buildErrorEvent("Too many concurrent chat streams"));
+                                    buffer.complete();
+                                }
+                            }, FluxSink.OverflowStrategy.ERROR)
+                            // 上游结束到客户端取走全部事件的耗时
+                            .doOnTerminate(() -> trace.spanSince(SPAN_SSE_FLUSH, buffer.getCompletedNanos()));
+                })
                 .doOnCancel(() -> log.info("Stream chat cancelled"))
                 .doOnComplete(() -> log.info("Stream chat completed"));
     }
 
-    private void executeStreamCall(ChatRequest request, Sinks.Many<ServerSentEvent<String>> sink)
+    private void readStream(ChatRequest request, ChatStreamBuffer buffer, Trace trace, long submitted) {
+        trace.spanSince(SPAN_EXECUTOR_QUEUE, submitted);
+        try {
+            executeStreamCall(request, buffer, trace);
+        } catch (ChatStreamBuffer.StreamClosedException e) {
+            log.info("Stopped reading DashScope stream {}, client gone or too slow", buffer.getStreamId());
+        } catch (Exception e) {
+            log.error("Error during stream chat", e);
+            buffer.offerEvent(buildErrorEvent(e.getMessage()));
+            buffer.complete();
+        }
+    }
+
+    private void executeStreamCall(ChatRequest request, ChatStreamBuffer buffer, Trace trace)
             throws NoApiKeyException, InputRequiredException {
 
-        Generation generation = new Generation();
+        long buildStart = System.nanoTime();
+        // 流式调用沿用 SDK 默认的连接设置
+        Generation streamGeneration = new Generation();
+        GenerationParam param = buildParam(request.getMessage(), true);  // 增量输出
+        trace.spanSince(SPAN_BUILD_PARAM, buildStart);
+
+        // 调用流式接口
+        long callStart = System.nanoTime();
+        long[] firstTokenAt = new long[1];
+        // SDK 的 Flowable 不受下游需求约束，读取线程等待客户端时 DashScope 仍在推送：
+        // 这里立即取走每个结果并计入该流及全局的缓冲预算，放不下时终止该流并取消上游
+        Flowable<GenerationResult> flowable = streamGeneration.streamCall(param)
+                .doOnNext(result -> buffer.admitUpstream(contentOf(result)))
+                .onBackpressureBuffer();
 
+        // 订阅并处理流式结果
+        flowable.blockingForEach(result -> {
+            buffer.releaseUpstream(contentOf(result));
+            if (firstTokenAt[0] == 0) {
+                firstTokenAt[0] = System.nanoTime();
+                trace.spanSince(SPAN_FIRST_TOKEN, callStart);
+            }
+            try {
+                processGenerationResult(result, buffer);
+            } catch (ChatStreamBuffer.StreamClosedException e) {
+                // 客户端已断开或被判定为慢客户端，停止消费上游
+                throw e;
+            } catch (Exception e) {
+                log.error("Error processing generation result", e);
+            }
+        });
+
+        trace.spanSince(SPAN_STREAMING, firstTokenAt[0]);
+
+        // 发送完成事件
+        buffer.offerEvent(buildDoneEvent(null));
+        buffer.complete();
+    }
+
+    /**
+     * 非流式调用，阻塞当前线程直到拿到完整结果；连接与读取超时由共享的 Generation 控制
+     */
+    @Override
+    public GenerationResult generate(String message) throws NoApiKeyException, InputRequiredException {
+        return generation.call(buildParam(message, false));
+    }
+
+    private GenerationParam buildParam(String message, boolean incrementalOutput) {
         // 构建用户消息
         Message userMessage = Message.builder()
                 .role(Role.USER.getValue())
-                .content(request.getMessage())
+                .content(message)
                 .build();
 
         // 构建请求参数
-        GenerationParam param = GenerationParam.builder()
+        return GenerationParam.builder()
                 .apiKey(dashScopeConfig.getKey())
                 .model(dashScopeConfig.getModel())
                 .messages(Collections.singletonList(userMessage))
                 .resultFormat(GenerationParam.ResultFormat.MESSAGE)
-                .incrementalOutput(true)  // 增量输出
+                .incrementalOutput(incrementalOutput)
                 .build();
+    }
 
-        // 调用流式接口
-        Flowable<GenerationResult> flowable = generation.streamCall(param);
-
-        // 订阅并处理流式结果
-        flowable.blockingForEach(result -> {
-            try {
-                processGenerationResult(result, sink);
-            } catch (Exception e) {
-                log.error("Error processing generation result", e);
+    private static String contentOf(GenerationResult result) {
+        StringBuilder content = new StringBuilder();
+        if (result.getOutput() != null && result.getOutput().getChoices() != null) {
+            for (var choice : result.getOutput().getChoices()) {
+                if (choice.getMessage() != null && choice.getMessage().getContent() != null) {
+                    content.append(choice.getMessage().getContent());
+                }
             }
-        });
-
-        // 发送完成事件
-        sink.tryEmitNext(buildDoneEvent(null));
-        sink.tryEmitComplete();
+        }
+        return content.toString();
     }
 
-    private void processGenerationResult(GenerationResult result, Sinks.Many<ServerSentEvent<String>> sink) {
+    private void processGenerationResult(GenerationResult result, ChatStreamBuffer buffer) {
         if (result.getOutput() != null && result.getOutput().getChoices() != null) {
             for (var choice : result.getOutput().getChoices()) {
                 if (choice.getMessage() != null && choice.getMessage().getContent() != null) {
                     String content = choice.getMessage().getContent();
                     if (!content.isEmpty()) {
-                        sink.tryEmitNext(buildTokenEvent(content));
+                        buffer.offerDelta(content);
                     }
                 }
 
@@ -114,13 +206,20 @@ public class ChatService {
                 if ("stop".equals(choice.getFinishReason())) {
                     // 发送 usage 信息
                     if (result.getUsage() != null) {
-                        sink.tryEmitNext(buildDoneEvent(result.getUsage()));
+                        buffer.offerEvent(buildDoneEvent(result.getUsage()));
                     }
                 }
             }
         }
     }
 
+    /**
+     * Buffered bytes of all active chat streams
+     */
+    public ChatBufferStats getBufferStats() {
+        return streamBudget.getStats();
+    }
+
     private ServerSentEvent<String> buildTokenEvent(String delta) {
         try {
             String data = objectMapper.writeValueAsString(Map.of("delta", delta));
@@ -0,0 +1,90 @@
+package com.phoebe.service;
+
+import com.phoebe.config.ChatStreamConfig;
+import com.phoebe.dto.ChatBufferStats;
+import com.phoebe.dto.ChatStreamStats;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Memory budget shared by the pending-event buffers of all active chat streams
+ */
+@Component
+public class ChatStreamBudget {
+
+    private final ChatStreamConfig config;
+    private final AtomicLong totalBytes = new AtomicLong();
+    private final AtomicLong peakTotalBytes = new AtomicLong();
+    private final AtomicLong terminatedStreams = new AtomicLong();
+    private final AtomicLong streamIds = new AtomicLong();
+    private final Set<ChatStreamBuffer> streams = ConcurrentHashMap.newKeySet();
+
+    public ChatStreamBudget(ChatStreamConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * Reserve bytes if the budget allows it
+     */
+    boolean tryReserve(long bytes) {
+        long limit = config.getMaxTotalBufferBytes();
+        while (true) {
+            long current = totalBytes.get();
+            if (current + bytes > limit) {
+                return false;
+            }
+            if (totalBytes.compareAndSet(current, current + bytes)) {
+                peakTotalBytes.accumulateAndGet(current + bytes, Math::max);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Reserve bytes regardless of the limit; only for the small terminal events of a stream
+     */
+    void forceReserve(long bytes) {
+        peakTotalBytes.accumulateAndGet(totalBytes.addAndGet(bytes), Math::max);
+    }
+
+    void release(long bytes) {
+        totalBytes.addAndGet(-bytes);
+    }
+
+    long nextStreamId() {
+        return streamIds.incrementAndGet();
+    }
+
+    void register(ChatStreamBuffer stream) {
+        streams.add(stream);
+    }
+
+    void unregister(ChatStreamBuffer stream) {
+        streams.remove(stream);
+    }
+
+    void recordTermination() {
+        terminatedStreams.incrementAndGet();
+    }
+
+    public ChatBufferStats getStats() {
+        List<ChatStreamStats> perStream = streams.stream()
+                .map(ChatStreamBuffer::getStats)
+                .sorted(Comparator.comparingLong(ChatStreamStats::getBufferedBytes).reversed())
+                .collect(Collectors.toList());
+        return new ChatBufferStats(
+                config.getSlowClientPolicy().name().toLowerCase(),
+                perStream.size(),
+                totalBytes.get(),
+                peakTotalBytes.get(),
+                config.getMaxTotalBufferBytes(),
+                terminatedStreams.get(),
+                perStream);
+    }
+}
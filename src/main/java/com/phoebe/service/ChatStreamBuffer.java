@@ -0,0 +1,410 @@
+package com.phoebe.service;
+
+import com.phoebe.config.ChatStreamConfig;
+import com.phoebe.dto.ChatStreamStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.FluxSink;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Bounded buffer between the DashScope reader thread and one SSE response.
+ * <p>
+ * Deltas are queued as plain text and only turned into events when the client asks for more.
+ * Once the stream's own limit or the shared {@link ChatStreamBudget} is reached, the configured
+ * slow-client policy decides whether pending deltas are coalesced, the reader waits for the client,
+ * or the stream ends with an error event.
+ * <p>
+ * The DashScope SDK pushes results regardless of demand, so a waiting reader does not slow the
+ * upstream connection down. Deltas delivered but not yet taken by the reader are charged here too
+ * ({@link #admitUpstream(String)}), and the stream is terminated when they no longer fit.
+ */
+final class ChatStreamBuffer {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatStreamBuffer.class);
+    // Rough heap cost of one queued event on top of its text: the event, its JSON payload and the queue node
+    private static final long EVENT_OVERHEAD_BYTES = 128;
+    // Other streams releasing budget don't wake us up, so a paused reader re-checks periodically
+    private static final long PAUSE_RECHECK_MS = 50;
+
+    private final long streamId;
+    private final String sessionId;
+    private final ChatStreamConfig config;
+    private final ChatStreamBudget budget;
+    private final Function<String, ServerSentEvent<String>> tokenEvent;
+    private final Function<String, ServerSentEvent<String>> errorEvent;
+
+    private final AtomicInteger wip = new AtomicInteger();
+    private volatile FluxSink<ServerSentEvent<String>> sink;
+    private volatile long completedNanos;
+
+    // Guarded by this
+    private final ArrayDeque<Pending> queue = new ArrayDeque<>();
+    private long bufferedBytes;
+    private long upstreamBytes;
+    private long peakBufferedBytes;
+    private long coalescedDeltas;
+    private boolean paused;
+    private boolean completed;
+    private boolean closed;
+    private boolean sinkCompleted;
+
+    ChatStreamBuffer(String sessionId, ChatStreamConfig config, ChatStreamBudget budget,
+                     Function<String, ServerSentEvent<String>> tokenEvent,
+                     Function<String, ServerSentEvent<String>> errorEvent) {
+        this.streamId = budget.nextStreamId();
+        this.sessionId = sessionId;
+        this.config = config;
+        this.budget = budget;
+        this.tokenEvent = tokenEvent;
+        this.errorEvent = errorEvent;
+    }
+
+    long getStreamId() {
+        return streamId;
+    }
+
+    /**
+     * When the reader finished queueing events, as {@link System#nanoTime()}; zero while still running
+     */
+    long getCompletedNanos() {
+        return completedNanos;
+    }
+
+    void attach(FluxSink<ServerSentEvent<String>> sink) {
+        this.sink = sink;
+        budget.register(this);
+        sink.onRequest(n -> drain());
+        sink.onDispose(this::dispose);
+        drain();
+    }
+
+    /**
+     * Charge a delta DashScope delivered before the reader takes it; called on the SDK's thread
+     *
+     * @throws StreamClosedException once the client is gone, or when the delta does not fit and the
+     *                               stream was terminated; the upstream should be cancelled
+     */
+    void admitUpstream(String delta) {
+        boolean accepted;
+        synchronized (this) {
+            if (closed) {
+                throw new StreamClosedException();
+            }
+            long cost = upstreamCost(delta);
+            // With nothing else held, one delta always fits
+            if (bufferedBytes == 0) {
+                admit(cost);
+                accepted = true;
+            } else {
+                accepted = tryReserve(cost, config.getMaxBufferBytes());
+                if (!accepted && config.getSlowClientPolicy() == ChatStreamConfig.SlowClientPolicy.COALESCE) {
+                    // Merging the queued deltas frees their per-event overhead
+                    mergeQueued();
+                    accepted = tryReserve(cost, config.getMaxBufferBytes());
+                }
+            }
+            if (accepted) {
+                upstreamBytes += cost;
+            } else {
+                terminate("Client is reading too slowly, stream terminated");
+            }
+        }
+        if (!accepted) {
+            drain();
+            throw new StreamClosedException();
+        }
+    }
+
+    /**
+     * The reader took a delta charged by {@link #admitUpstream(String)}
+     */
+    synchronized void releaseUpstream(String delta) {
+        // Termination and disposal already released everything
+        if (closed) {
+            return;
+        }
+        long cost = upstreamCost(delta);
+        upstreamBytes -= cost;
+        release(cost);
+    }
+
+    /**
+     * Queue a delta from the reader thread, applying the slow-client policy when there is no room
+     *
+     * @throws StreamClosedException once the client is gone or the stream was terminated; the reader should stop
+     */
+    void offerDelta(String delta) {
+        boolean accepted;
+        synchronized (this) {
+            if (closed) {
+                throw new StreamClosedException();
+            }
+            accepted = enqueue(delta);
+            if (!accepted) {
+                terminate("Client is reading too slowly, stream terminated");
+            }
+        }
+        drain();
+        if (!accepted) {
+            throw new StreamClosedException();
+        }
+    }
+
+    /**
+     * Queue a terminal event (done / error); these are small and always accepted
+     */
+    void offerEvent(ServerSentEvent<String> event) {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            queueEvent(event);
+        }
+        drain();
+    }
+
+    void complete() {
+        completedNanos = System.nanoTime();
+        synchronized (this) {
+            completed = true;
+        }
+        drain();
+    }
+
+    synchronized ChatStreamStats getStats() {
+        return new ChatStreamStats(streamId, sessionId, bufferedBytes, upstreamBytes, peakBufferedBytes,
+                queue.size(), coalescedDeltas, paused);
+    }
+
+    private boolean enqueue(String delta) {
+        long textBytes = 2L * delta.length();
+        long cost = textBytes + EVENT_OVERHEAD_BYTES;
+        if (reserveEvent(cost)) {
+            queue.add(new Pending(delta, cost));
+            return true;
+        }
+        switch (config.getSlowClientPolicy()) {
+            case COALESCE:
+                return coalesce(delta, textBytes);
+            case PAUSE:
+                return awaitRoom(delta, cost);
+            default:
+                return false;
+        }
+    }
+
+    private boolean coalesce(String delta, long textBytes) {
+        Pending merged = mergeQueued();
+        if (merged == null || !tryReserve(textBytes, queueLimit())) {
+            return false;
+        }
+        merged.text.append(delta);
+        merged.bytes += textBytes;
+        coalescedDeltas++;
+        return true;
+    }
+
+    /**
+     * Fold all queued deltas into the first one and return it, or null when none is queued
+     */
+    private Pending mergeQueued() {
+        // Deltas only ever precede terminal events, so folding them in order keeps the text intact
+        Pending merged = null;
+        long freed = 0;
+        for (Iterator<Pending> it = queue.iterator(); it.hasNext(); ) {
+            Pending pending = it.next();
+            if (pending.text == null) {
+                continue;
+            }
+            if (merged == null) {
+                merged = pending;
+                continue;
+            }
+            merged.text.append(pending.text);
+            merged.bytes += pending.bytes - EVENT_OVERHEAD_BYTES;
+            freed += EVENT_OVERHEAD_BYTES;
+            coalescedDeltas++;
+            it.remove();
+        }
+        release(freed);
+        return merged;
+    }
+
+    private boolean awaitRoom(String delta, long cost) {
+        // Waiting does not slow DashScope down: what it sends meanwhile is charged by admitUpstream,
+        // within the half of the stream limit the queue leaves free under this policy
+        paused = true;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getPauseTimeoutMs());
+        try {
+            while (!closed) {
+                if (reserveEvent(cost)) {
+                    queue.add(new Pending(delta, cost));
+                    return true;
+                }
+                long remainingNanos = deadline - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    return false;
+                }
+                wait(Math.max(1, Math.min(PAUSE_RECHECK_MS, TimeUnit.NANOSECONDS.toMillis(remainingNanos) + 1)));
+            }
+            throw new StreamClosedException();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StreamClosedException();
+        } finally {
+            paused = false;
+        }
+    }
+
+    private void terminate(String reason) {
+        log.warn("Terminating chat stream {} (sessionId: {}), policy: {}, buffered bytes: {}",
+                streamId, sessionId, config.getSlowClientPolicy(), bufferedBytes);
+        release(bufferedBytes);
+        upstreamBytes = 0;
+        queue.clear();
+        queueEvent(errorEvent.apply(reason));
+        completed = true;
+        closed = true;
+        budget.recordTermination();
+        notifyAll();
+    }
+
+    private void queueEvent(ServerSentEvent<String> event) {
+        String data = event.data();
+        long cost = EVENT_OVERHEAD_BYTES + (data != null ? 2L * data.length() : 0);
+        admit(cost);
+        queue.add(new Pending(event, cost));
+    }
+
+    private boolean reserveEvent(long cost) {
+        // An empty queue means the client has caught up; one event always fits
+        if (queue.isEmpty()) {
+            admit(cost);
+            return true;
+        }
+        return tryReserve(cost, queueLimit());
+    }
+
+    /**
+     * Bytes the client queue may hold; under pause half the stream limit stays free for deltas
+     * arriving while the reader waits
+     */
+    private long queueLimit() {
+        return config.getSlowClientPolicy() == ChatStreamConfig.SlowClientPolicy.PAUSE
+                ? config.getMaxBufferBytes() / 2 : config.getMaxBufferBytes();
+    }
+
+    private boolean tryReserve(long bytes, long limit) {
+        if (bufferedBytes + bytes > limit || !budget.tryReserve(bytes)) {
+            return false;
+        }
+        bufferedBytes += bytes;
+        peakBufferedBytes = Math.max(peakBufferedBytes, bufferedBytes);
+        return true;
+    }
+
+    private void admit(long bytes) {
+        budget.forceReserve(bytes);
+        bufferedBytes += bytes;
+        peakBufferedBytes = Math.max(peakBufferedBytes, bufferedBytes);
+    }
+
+    private void release(long bytes) {
+        if (bytes == 0) {
+            return;
+        }
+        bufferedBytes -= bytes;
+        budget.release(bytes);
+    }
+
+    private static long upstreamCost(String delta) {
+        return 2L * delta.length() + EVENT_OVERHEAD_BYTES;
+    }
+
+    /**
+     * Hand queued events to the client as far as it has asked for them; safe to call from any thread
+     */
+    private void drain() {
+        FluxSink<ServerSentEvent<String>> target = sink;
+        if (target == null || wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            while (target.requestedFromDownstream() > 0 && !target.isCancelled()) {
+                Pending pending;
+                synchronized (this) {
+                    pending = queue.poll();
+                    if (pending == null) {
+                        break;
+                    }
+                    release(pending.bytes);
+                    if (paused) {
+                        notifyAll();
+                    }
+                }
+                target.next(pending.event != null ? pending.event : tokenEvent.apply(pending.text.toString()));
+            }
+            boolean finish;
+            synchronized (this) {
+                finish = completed && queue.isEmpty() && !sinkCompleted;
+                if (finish) {
+                    sinkCompleted = true;
+                }
+            }
+            if (finish) {
+                target.complete();
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void dispose() {
+        synchronized (this) {
+            closed = true;
+            release(bufferedBytes);
+            upstreamBytes = 0;
+            queue.clear();
+            notifyAll();
+        }
+        budget.unregister(this);
+    }
+
+    /**
+     * Thrown to the reader thread so it stops consuming the DashScope stream
+     */
+    static final class StreamClosedException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        StreamClosedException() {
+            super("Chat stream closed", null, false, false);
+        }
+    }
+
+    private static final class Pending {
+
+        private final StringBuilder text;
+        private final ServerSentEvent<String> event;
+        private long bytes;
+
+        Pending(String delta, long bytes) {
+            this.text = new StringBuilder(delta);
+            this.event = null;
+            this.bytes = bytes;
+        }
+
+        Pending(ServerSentEvent<String> event, long bytes) {
+            this.text = null;
+            this.event = event;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.phoebe.service;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscription;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Blocking InputStream over a DataBuffer publisher that never holds more than
+ * {@code demand} buffers: one more buffer is requested only after one has been read.
+ * Must be read from a thread that is allowed to block.
+ */
+class DataBufferInputStream extends InputStream {
+
+    private static final Object COMPLETE = new Object();
+
+    // DataBuffer, Throwable or COMPLETE; outstanding demand plus one terminal signal always fits
+    private final BlockingQueue<Object> queue;
+    private final BaseSubscriber<DataBuffer> subscriber;
+    private DataBuffer current;
+    private boolean done;
+
+    DataBufferInputStream(Publisher<DataBuffer> source, int demand) {
+        this.queue = new ArrayBlockingQueue<>(demand + 1);
+        this.subscriber = new BaseSubscriber<>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                subscription.request(demand);
+            }
+
+            @Override
+            protected void hookOnNext(DataBuffer buffer) {
+                queue.offer(buffer);
+            }
+
+            @Override
+            protected void hookOnError(Throwable throwable) {
+                queue.offer(throwable);
+            }
+
+            @Override
+            protected void hookOnComplete() {
+                queue.offer(COMPLETE);
+            }
+        };
+        Flux.from(source).subscribe(subscriber);
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        int n = read(single, 0, 1);
+        return n < 0 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!awaitCurrent()) {
+            return -1;
+        }
+        int n = Math.min(len, current.readableByteCount());
+        current.read(bytes, off, n);
+        if (current.readableByteCount() == 0) {
+            DataBufferUtils.release(current);
+            current = null;
+            subscriber.request(1);
+        }
+        return n;
+    }
+
+    @Override
+    public void close() {
+        done = true;
+        subscriber.dispose();
+        if (current != null) {
+            DataBufferUtils.release(current);
+            current = null;
+        }
+        Object item;
+        while ((item = queue.poll()) != null) {
+            if (item instanceof DataBuffer buffer) {
+                DataBufferUtils.release(buffer);
+            }
+        }
+    }
+
+    private boolean awaitCurrent() throws IOException {
+        while (current == null) {
+            if (done) {
+                return false;
+            }
+            Object item;
+            try {
+                item = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for request body");
+            }
+            if (item == COMPLETE) {
+                done = true;
+            } else if (item instanceof Throwable error) {
+                done = true;
+                throw new IOException("Request body failed", error);
+            } else {
+                current = (DataBuffer) item;
+                if (current.readableByteCount() == 0) {
+                    DataBufferUtils.release(current);
+                    current = null;
+                    subscriber.request(1);
+                }
+            }
+        }
+        return true;
+    }
+}
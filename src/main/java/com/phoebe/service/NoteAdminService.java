@@ -0,0 +1,74 @@
+package com.phoebe.service;
+
+import com.phoebe.config.ShardedConnectionFactory;
+import com.phoebe.dto.ShardStats;
+import com.phoebe.entity.Note;
+import com.phoebe.repository.NoteRepository;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.OffsetDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Cross-user queries: fanned out to every shard and merged
+ */
+@Service
+public class NoteAdminService {
+
+    private static final Comparator<Note> NEWEST_FIRST =
+            Comparator.comparing(Note::getCreatedAt, Comparator.nullsLast(Comparator.reverseOrder()));
+
+    private final NoteRepository noteRepository;
+    private final ShardedConnectionFactory shards;
+
+    public NoteAdminService(NoteRepository noteRepository, ShardedConnectionFactory shards) {
+        this.noteRepository = noteRepository;
+        this.shards = shards;
+    }
+
+    /**
+     * Newest active notes across all users, optionally filtered by source or created_at range
+     */
+    public Flux<Note> findActiveNotes(String source, OffsetDateTime from, OffsetDateTime to, int limit) {
+        // No shard can contribute more than limit notes to the merged page
+        Limit perShard = Limit.of(limit);
+        Supplier<Flux<Note>> query;
+        if (source != null && !source.isBlank()) {
+            query = () -> noteRepository.findBySourceAndStatusOrderByCreatedAtDesc(source, Note.STATUS_ACTIVE, perShard);
+        } else if (from != null || to != null) {
+            OffsetDateTime start = from != null ? from : OffsetDateTime.parse("1970-01-01T00:00:00Z");
+            OffsetDateTime end = to != null ? to : OffsetDateTime.now();
+            query = () -> noteRepository.findByCreatedAtBetweenAndStatusOrderByCreatedAtDesc(start, end,
+                    Note.STATUS_ACTIVE, perShard);
+        } else {
+            query = () -> noteRepository.findByStatusOrderByCreatedAtDesc(Note.STATUS_ACTIVE, perShard);
+        }
+        // Each shard is already sorted, so a k-way merge keeps the global order and take() stops early
+        return Flux.mergeComparing(NEWEST_FIRST, onEveryShard(query))
+                .take(limit);
+    }
+
+    public Flux<ShardStats> getShardStats() {
+        return Flux.range(0, shards.getShardCount())
+                .concatMap(shard -> Mono.zip(noteRepository.count(), noteRepository.countByStatus(Note.STATUS_ACTIVE))
+                        .map(counts -> new ShardStats(shard, counts.getT1(), counts.getT2()))
+                        .contextWrite(ShardedConnectionFactory.routeToShard(shard)));
+    }
+
+    private Flux<Note>[] onEveryShard(Supplier<Flux<Note>> query) {
+        List<Flux<Note>> perShard = IntStream.range(0, shards.getShardCount())
+                .mapToObj(shard -> query.get().contextWrite(ShardedConnectionFactory.routeToShard(shard)))
+                .collect(Collectors.toList());
+        // Generic arrays can only be created raw; every element is a Flux<Note>
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Flux<Note>[] sources = perShard.toArray(new Flux[0]);
+        return sources;
+    }
+}
@@ -0,0 +1,384 @@
+package com.phoebe.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.phoebe.config.NoteArchiveConfig;
+import com.phoebe.config.ShardedConnectionFactory;
+import com.phoebe.dto.NoteImportResponse;
+import com.phoebe.dto.NoteRecord;
+import com.phoebe.entity.Note;
+import com.phoebe.entity.NoteChange;
+import com.phoebe.repository.NoteRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streaming export / import of a user's notes as (gzip-compressed) NDJSON, one {@link NoteRecord} per line.
+ * <p>
+ * Both directions work on bounded chunks, so memory stays flat regardless of how many notes a user has.
+ */
+@Service
+public class NoteArchiveService {
+
+    private static final Logger log = LoggerFactory.getLogger(NoteArchiveService.class);
+    private static final int BUFFER_SIZE = 8192;
+    private static final int BODY_DEMAND = 4;
+    // Column sizes of the notes table
+    private static final int MAX_ID_LENGTH = 36;
+    private static final int MAX_SOURCE_LENGTH = 20;
+    private static final int MAX_TITLE_LENGTH = 500;
+
+    private final NoteRepository noteRepository;
+    private final NoteChangeService noteChangeService;
+    private final NoteFacetService noteFacetService;
+    private final NoteDedupService noteDedupService;
+    private final NoteArchiveConfig config;
+    private final TransactionalOperator transactionalOperator;
+    private final NoteRecordMapper noteRecordMapper;
+    private final ShardedConnectionFactory shards;
+    private final ObjectWriter lineWriter;
+    private final ObjectReader lineReader;
+
+    public NoteArchiveService(NoteRepository noteRepository, NoteChangeService noteChangeService,
+                              NoteFacetService noteFacetService, NoteDedupService noteDedupService,
+                              NoteArchiveConfig config, TransactionalOperator transactionalOperator,
+                              NoteRecordMapper noteRecordMapper, ShardedConnectionFactory shards,
+                              ObjectMapper objectMapper) {
+        this.noteRepository = noteRepository;
+        this.noteChangeService = noteChangeService;
+        this.noteFacetService = noteFacetService;
+        this.noteDedupService = noteDedupService;
+        this.config = config;
+        this.transactionalOperator = transactionalOperator;
+        this.noteRecordMapper = noteRecordMapper;
+        this.shards = shards;
+        this.lineWriter = objectMapper.writerFor(NoteRecord.class).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.lineReader = objectMapper.readerFor(NoteRecord.class);
+    }
+
+    /**
+     * Stream all notes of a user as gzip-compressed NDJSON, straight from the query cursor
+     */
+    public Flux<DataBuffer> exportNotes(String userId, boolean includeDeleted, DataBufferFactory bufferFactory) {
+        Flux<Note> notes = (includeDeleted
+                ? noteRepository.findByUserId(userId)
+                : noteRepository.findActiveByUserId(userId))
+                .contextWrite(shards.routeToUser(userId));
+        return Flux.using(
+                        () -> new GzipChunkWriter(bufferFactory),
+                        writer -> notes
+                                .buffer(config.getExportChunkSize())
+                                .map(writer::write)
+                                .concatWith(Mono.fromCallable(writer::finish)),
+                        GzipChunkWriter::close)
+                .filter(buffer -> {
+                    // The deflater may hold a whole chunk back; don't send empty frames
+                    if (buffer.readableByteCount() == 0) {
+                        DataBufferUtils.release(buffer);
+                        return false;
+                    }
+                    return true;
+                })
+                .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+                .doOnComplete(() -> log.info("Notes exported for userId: {}, includeDeleted: {}", userId, includeDeleted));
+    }
+
+    /**
+     * Import NDJSON (gzip-compressed or plain) for a user with batched inserts.
+     * Notes whose id already exists are skipped; lines that are too long or do not fit the
+     * notes table are counted as invalid.
+     */
+    public Mono<NoteImportResponse> importNotes(String userId, Flux<DataBuffer> body) {
+        AtomicLong imported = new AtomicLong();
+        AtomicLong duplicates = new AtomicLong();
+        AtomicLong invalid = new AtomicLong();
+
+        Flux<String> lines = Flux.<String, BufferedReader>generate(
+                        () -> openReader(body),
+                        (reader, sink) -> {
+                            try {
+                                String line = readLine(reader, invalid);
+                                if (line != null) {
+                                    sink.next(line);
+                                } else {
+                                    sink.complete();
+                                }
+                            } catch (IOException e) {
+                                sink.error(new UncheckedIOException(e));
+                            }
+                            return reader;
+                        },
+                        this::closeQuietly)
+                // Reading the body blocks, keep it off the event loop
+                .subscribeOn(Schedulers.boundedElastic());
+
+        return lines
+                .filter(line -> !line.isBlank())
+                .buffer(config.getImportBatchSize())
+                .concatMap(batch -> importBatch(userId, batch, imported, duplicates, invalid), 1)
+                // Imports are not deduplicated, but the user's near-duplicate index must see them
+                .doFinally(signal -> noteDedupService.invalidate(userId))
+                .then(Mono.fromSupplier(() -> new NoteImportResponse(imported.get(), duplicates.get(), invalid.get())))
+                .contextWrite(shards.routeToUser(userId))
+                .doOnNext(result -> log.info("Notes imported for userId: {}, imported: {}, duplicates: {}, invalid: {}",
+                        userId, result.getImported(), result.getDuplicates(), result.getInvalid()));
+    }
+
+    private Mono<Void> importBatch(String userId, List<String> lines,
+                                   AtomicLong imported, AtomicLong duplicates, AtomicLong invalid) {
+        // Deduplicate within the batch too, last line wins
+        Map<String, Note> byId = new LinkedHashMap<>();
+        for (String line : lines) {
+            Note note = parseLine(userId, line);
+            if (note == null) {
+                invalid.incrementAndGet();
+            } else if (byId.put(note.getId(), note) != null) {
+                duplicates.incrementAndGet();
+            }
+        }
+        if (byId.isEmpty()) {
+            return Mono.empty();
+        }
+
+        return insertMissing(byId)
+                .doOnNext(count -> {
+                    imported.addAndGet(count);
+                    duplicates.addAndGet(byId.size() - count);
+                })
+                .then();
+    }
+
+    /**
+     * Insert the notes whose id is not taken yet. The check runs in the insert's transaction, so an id
+     * inserted concurrently fails the insert and the retry skips it instead of aborting the import.
+     */
+    private Mono<Long> insertMissing(Map<String, Note> byId) {
+        return noteRepository.findAllById(byId.keySet())
+                .map(Note::getId)
+                .collect(Collectors.toSet())
+                .flatMap(existing -> {
+                    List<Note> fresh = byId.values().stream()
+                            .filter(note -> !existing.contains(note.getId()))
+                            .collect(Collectors.toList());
+                    return fresh.isEmpty() ? Mono.just(0L) : insertBatch(fresh);
+                })
+                .as(transactionalOperator::transactional)
+                .retryWhen(NoteFacetService.retryOnConflict());
+    }
+
+    private Mono<Long> insertBatch(List<Note> notes) {
+        OffsetDateTime now = OffsetDateTime.now();
+        List<NoteChange> changes = notes.stream()
+                .filter(note -> note.getStatus() == Note.STATUS_ACTIVE)
+                .map(note -> new NoteChange(note.getUserId(), note.getId(), NoteChange.OP_CREATE, now))
+                .collect(Collectors.toList());
+        return noteRepository.insertAll(notes)
+                .flatMap(count -> noteChangeService.recordAll(changes)
+                        .then(noteFacetService.recordCreated(notes))
+                        .thenReturn(count));
+    }
+
+    private Note parseLine(String userId, String line) {
+        NoteRecord record;
+        try {
+            record = lineReader.readValue(line);
+        } catch (IOException e) {
+            log.debug("Skipping malformed import line: {}", e.getMessage());
+            return null;
+        }
+        if (record.getSource() == null || record.getContent() == null || record.getCreatedAt() == null) {
+            return null;
+        }
+        String id = record.getId() != null ? record.getId() : UUID.randomUUID().toString();
+        // A value the table would reject fails the whole batch, so drop just that line
+        if (id.length() > MAX_ID_LENGTH || record.getSource().length() > MAX_SOURCE_LENGTH
+                || (record.getTitle() != null && record.getTitle().length() > MAX_TITLE_LENGTH)) {
+            return null;
+        }
+        int status = record.getStatus() != null && record.getStatus() == Note.STATUS_DELETED
+                ? Note.STATUS_DELETED
+                : Note.STATUS_ACTIVE;
+        // Imported notes always belong to the importing user
+        Note note = new Note(
+                id,
+                userId,
+                record.getSource(),
+                record.getTitle(),
+                record.getContent(),
+                record.getComment(),
+                noteRecordMapper.serializeTags(record.getTags()),
+                status,
+                record.getCreatedAt(),
+                record.getIngestedAt() != null ? record.getIngestedAt() : OffsetDateTime.now()
+        );
+        note.setSimhash(noteDedupService.fingerprint(note.getContent()));
+        return note;
+    }
+
+    /**
+     * Next line without its terminator, or null at the end of the input. Lines longer than
+     * importMaxLineLength are skipped without being buffered and counted as invalid.
+     */
+    private String readLine(BufferedReader reader, AtomicLong invalid) throws IOException {
+        int maxLength = config.getImportMaxLineLength();
+        StringBuilder line = new StringBuilder();
+        while (true) {
+            boolean tooLong = false;
+            int c;
+            while ((c = reader.read()) != -1 && c != '\n') {
+                if (tooLong) {
+                    continue;
+                }
+                if (line.length() < maxLength) {
+                    line.append((char) c);
+                } else if (c != '\r') {
+                    tooLong = true;
+                }
+            }
+            if (tooLong) {
+                log.debug("Skipping import line longer than {} chars", maxLength);
+                invalid.incrementAndGet();
+                line.setLength(0);
+                if (c == -1) {
+                    return null;
+                }
+                continue;
+            }
+            if (c == -1 && line.length() == 0) {
+                return null;
+            }
+            int end = line.length();
+            if (end > 0 && line.charAt(end - 1) == '\r') {
+                line.setLength(end - 1);
+            }
+            return line.toString();
+        }
+    }
+
+    private BufferedReader openReader(Flux<DataBuffer> body) throws IOException {
+        InputStream in = new BufferedInputStream(new DataBufferInputStream(body, BODY_DEMAND), BUFFER_SIZE);
+        // Accept both .ndjson.gz and plain .ndjson, sniffing the gzip magic bytes
+        in.mark(2);
+        int b1 = in.read();
+        int b2 = in.read();
+        in.reset();
+        if (b1 == 0x1f && b2 == 0x8b) {
+            in = new GZIPInputStream(in, BUFFER_SIZE);
+        }
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    private void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            log.warn("Failed to close import stream", e);
+        }
+    }
+
+    /**
+     * Gzip stream whose compressed output goes into a fresh DataBuffer per chunk of notes
+     */
+    private final class GzipChunkWriter implements Closeable {
+
+        private final DataBufferFactory bufferFactory;
+        private final RedirectableOutputStream target = new RedirectableOutputStream();
+        private GZIPOutputStream gzip;
+
+        GzipChunkWriter(DataBufferFactory bufferFactory) {
+            this.bufferFactory = bufferFactory;
+        }
+
+        DataBuffer write(List<Note> notes) {
+            DataBuffer buffer = bufferFactory.allocateBuffer(BUFFER_SIZE);
+            try {
+                GZIPOutputStream out = redirect(buffer);
+                for (Note note : notes) {
+                    lineWriter.writeValue(out, noteRecordMapper.toRecord(note));
+                    out.write('\n');
+                }
+                return buffer;
+            } catch (IOException e) {
+                DataBufferUtils.release(buffer);
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        DataBuffer finish() throws IOException {
+            DataBuffer buffer = bufferFactory.allocateBuffer(BUFFER_SIZE);
+            try {
+                redirect(buffer).finish();
+                return buffer;
+            } catch (IOException e) {
+                DataBufferUtils.release(buffer);
+                throw e;
+            }
+        }
+
+        @Override
+        public void close() {
+            if (gzip == null) {
+                return;
+            }
+            // Releases the native deflater; anything still pending is discarded
+            target.delegate = OutputStream.nullOutputStream();
+            try {
+                gzip.close();
+            } catch (IOException e) {
+                log.warn("Failed to close export stream", e);
+            }
+        }
+
+        private GZIPOutputStream redirect(DataBuffer buffer) throws IOException {
+            target.delegate = buffer.asOutputStream();
+            if (gzip == null) {
+                gzip = new GZIPOutputStream(target, BUFFER_SIZE);
+            }
+            return gzip;
+        }
+    }
+
+    private static final class RedirectableOutputStream extends OutputStream {
+
+        private OutputStream delegate = OutputStream.nullOutputStream();
+
+        @Override
+        public void write(int b) throws IOException {
+            delegate.write(b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int off, int len) throws IOException {
+            delegate.write(bytes, off, len);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.phoebe.service;
+
+import com.phoebe.config.NoteChangeFeedConfig;
+import com.phoebe.config.ShardedConnectionFactory;
+import com.phoebe.dto.NoteChangeEvent;
+import com.phoebe.dto.NoteChangesResponse;
+import com.phoebe.entity.Note;
+import com.phoebe.entity.NoteChange;
+import com.phoebe.repository.NoteChangeRepository;
+import com.phoebe.repository.NoteChangeSeq;
+import com.phoebe.repository.NoteRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+import java.time.OffsetDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Per-user change feed backed by the note_changes table.
+ * <p>
+ * The table is the source of truth so that every instance sees every write. Each user's seqs are
+ * handed out under a row lock in the writing transaction, so they become visible in order and a
+ * cursor can never skip a change that commits later. A single poller per instance watches the
+ * sequence rows of the users subscribed to it and only uses the in-process sink to wake up those
+ * SSE subscribers, which then read their deltas from their home shard.
+ */
+@Service
+public class NoteChangeService {
+
+    private static final Logger log = LoggerFactory.getLogger(NoteChangeService.class);
+
+    private final NoteChangeRepository changeRepository;
+    private final NoteRepository noteRepository;
+    private final NoteChangeFeedConfig config;
+    private final ShardedConnectionFactory shards;
+
+    // userIds that have new changes, fed by the poller
+    private final Sinks.Many<String> wakeups = Sinks.many().multicast().directBestEffort();
+    // SSE subscriptions per user on this instance, and the last seq the poller saw for each such user
+    private final Map<String, AtomicInteger> subscriptions = new ConcurrentHashMap<>();
+    private final Map<String, Long> polledSeqs = new ConcurrentHashMap<>();
+
+    public NoteChangeService(NoteChangeRepository changeRepository, NoteRepository noteRepository,
+                             NoteChangeFeedConfig config, ShardedConnectionFactory shards) {
+        this.changeRepository = changeRepository;
+        this.noteRepository = noteRepository;
+        this.config = config;
+        this.shards = shards;
+    }
+
+    /**
+     * Append a change for a note; must run in the same transaction as the note write
+     */
+    public Mono<NoteChange> record(String userId, String noteId, String op) {
+        NoteChange change = new NoteChange(userId, noteId, op, OffsetDateTime.now());
+        return changeRepository.insertAll(List.of(change)).thenReturn(change);
+    }
+
+    /**
+     * Append many changes in one batch; same transaction rule as {@link #record}
+     */
+    public Mono<Long> recordAll(List<NoteChange> changes) {
+        return changeRepository.insertAll(changes);
+    }
+
+    /**
+     * One page of deltas after the given seq
+     */
+    public Mono<NoteChangesResponse> getChanges(String userId, long since, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, config.getPageSize()));
+        return changeRepository.findHorizon(userId)
+                .flatMap(horizon -> {
+                    if (isBehindHorizon(since, horizon)) {
+                        return Mono.just(NoteChangesResponse.resync());
+                    }
+                    // Read one extra row to know whether another page follows
+                    return fetchEvents(userId, since, pageSize + 1)
+                            .map(events -> {
+                                boolean hasMore = events.size() > pageSize;
+                                List<NoteChangeEvent> page = hasMore ? events.subList(0, pageSize) : events;
+                                long nextSince = page.isEmpty() ? since : page.get(page.size() - 1).getSeq();
+                                return new NoteChangesResponse(page, nextSince, hasMore, false);
+                            });
+                })
+                .contextWrite(shards.routeToUser(userId));
+    }
+
+    /**
+     * Replay deltas after the given seq, then keep pushing new ones as they are committed
+     */
+    public Flux<ServerSentEvent<NoteChangeEvent>> streamChanges(String userId, long since) {
+        return changeRepository.findHorizon(userId)
+                .flatMapMany(horizon -> {
+                    if (isBehindHorizon(since, horizon)) {
+                        return Flux.just(ServerSentEvent.<NoteChangeEvent>builder().event("resync").build());
+                    }
+                    AtomicLong cursor = new AtomicLong(since);
+                    // Wake-ups only say "look again"; the initial one triggers the catch-up read.
+                    // Subscribing to the sink before the first read means no commit can slip between them.
+                    return wakeups.asFlux()
+                            .filter(userId::equals)
+                            .onBackpressureLatest()
+                            .startWith(userId)
+                            .concatMap(ignored -> drain(userId, cursor), 1)
+                            .map(event -> ServerSentEvent.<NoteChangeEvent>builder()
+                                    .id(String.valueOf(event.getSeq()))
+                                    .event("change")
+                                    .data(event)
+                                    .build());
+                })
+                .contextWrite(shards.routeToUser(userId))
+                .doOnSubscribe(subscription -> subscribe(userId))
+                .doFinally(signal -> unsubscribe(userId))
+                .doOnCancel(() -> log.debug("Change stream cancelled for userId: {}", userId));
+    }
+
+    /**
+     * Wake up local subscribers whose users got new changes
+     */
+    @Scheduled(fixedDelayString = "${notes.changes.poll-interval-ms:500}")
+    public Mono<Void> pollChanges() {
+        // Scheduled publishers are re-subscribed on every tick, so pick the users per subscription
+        return Flux.defer(() -> Flux.fromIterable(subscriptions.keySet()))
+                .flatMap(userId -> shards.resolveShard(userId).map(shard -> Tuples.of(shard, userId)))
+                .collectMultimap(Tuple2::getT1, Tuple2::getT2)
+                // Shards are polled one after another so the sink is only ever emitted to serially
+                .flatMapMany(usersByShard -> Flux.fromIterable(usersByShard.entrySet()))
+                .concatMap(entry -> Flux.fromIterable(entry.getValue())
+                        .buffer(config.getPageSize())
+                        .concatMap(changeRepository::findLastSeqs)
+                        .contextWrite(ShardedConnectionFactory.routeToShard(entry.getKey())))
+                .doOnNext(this::wakeIfAdvanced)
+                .then();
+    }
+
+    /**
+     * Keep only the latest change per note, and drop tombstones past the retention window
+     */
+    @Scheduled(fixedDelayString = "${notes.changes.compaction-interval-ms:3600000}",
+            initialDelayString = "${notes.changes.compaction-interval-ms:3600000}")
+    public Mono<Void> compact() {
+        return Flux.range(0, shards.getShardCount())
+                .concatMap(shard -> compactShard(shard).contextWrite(ShardedConnectionFactory.routeToShard(shard)))
+                .then();
+    }
+
+    private void wakeIfAdvanced(NoteChangeSeq polled) {
+        String userId = polled.getUserId();
+        if (!subscriptions.containsKey(userId)) {
+            return;
+        }
+        Long previous = polledSeqs.put(userId, polled.getLastSeq());
+        // The first sighting also wakes: a change may have committed after the subscriber's catch-up read
+        if (previous == null || polled.getLastSeq() > previous) {
+            wakeups.tryEmitNext(userId);
+        }
+    }
+
+    private void subscribe(String userId) {
+        subscriptions.computeIfAbsent(userId, id -> new AtomicInteger()).incrementAndGet();
+    }
+
+    private void unsubscribe(String userId) {
+        subscriptions.computeIfPresent(userId, (id, count) -> {
+            if (count.decrementAndGet() > 0) {
+                return count;
+            }
+            polledSeqs.remove(id);
+            return null;
+        });
+    }
+
+    private Mono<Void> compactShard(int shard) {
+        return Mono.defer(() -> {
+                    OffsetDateTime cutoff = OffsetDateTime.now().minusHours(config.getTombstoneRetentionHours());
+                    return changeRepository.deleteSuperseded()
+                            // Advance the horizons first so no client reads a gap without being told to resync
+                            .flatMap(superseded -> changeRepository.advanceHorizons(cutoff)
+                                    .then(changeRepository.deletePurgedTombstones())
+                                    .filter(purged -> superseded > 0 || purged > 0)
+                                    .doOnNext(purged -> log.info("Change feed compacted, shard: {}, superseded: {}, tombstones purged: {}",
+                                            shard, superseded, purged)));
+                })
+                .onErrorResume(e -> {
+                    log.error("Change feed compaction failed on shard {}", shard, e);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private boolean isBehindHorizon(long since, long horizon) {
+        // since=0 replays the compacted feed, which is always a complete snapshot
+        return since > 0 && since < horizon;
+    }
+
+    private Flux<NoteChangeEvent> drain(String userId, AtomicLong cursor) {
+        int pageSize = config.getPageSize();
+        Mono<List<NoteChangeEvent>> nextPage = Mono.defer(() -> fetchEvents(userId, cursor.get(), pageSize))
+                .doOnNext(events -> {
+                    if (!events.isEmpty()) {
+                        cursor.set(events.get(events.size() - 1).getSeq());
+                    }
+                });
+        return nextPage
+                .expand(events -> events.size() < pageSize ? Mono.empty() : nextPage)
+                .flatMapIterable(events -> events);
+    }
+
+    private Mono<List<NoteChangeEvent>> fetchEvents(String userId, long since, int limit) {
+        return changeRepository.findByUserIdAfter(userId, since, limit)
+                .collectList()
+                .flatMap(changes -> {
+                    // Creates and updates carry the current note
+                    Set<String> noteIds = changes.stream()
+                            .filter(c -> !NoteChange.OP_DELETE.equals(c.getOp()))
+                            .map(NoteChange::getNoteId)
+                            .collect(Collectors.toSet());
+                    Mono<Map<String, Note>> notes = noteIds.isEmpty()
+                            ? Mono.just(Collections.emptyMap())
+                            : noteRepository.findAllById(noteIds).collectMap(Note::getId);
+                    return notes.map(byId -> changes.stream()
+                            .map(c -> new NoteChangeEvent(c.getSeq(), c.getOp(), c.getNoteId(), c.getChangedAt(),
+                                    byId.get(c.getNoteId())))
+                            .collect(Collectors.toList()));
+                });
+    }
+}
@@ -0,0 +1,231 @@
+package com.phoebe.service;
+
+import com.phoebe.config.NoteDedupConfig;
+import com.phoebe.config.ShardedConnectionFactory;
+import com.phoebe.entity.Note;
+import com.phoebe.repository.NoteRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Near-duplicate lookup for new notes.
+ * <p>
+ * Every note stores a SimHash of its normalized content. Each instance keeps a per-user
+ * {@link SimHashIndex} of the active notes' fingerprints in a bounded LRU cache; an index is built
+ * from the notes table on first use, with concurrent lookups sharing one load, and rebuilt after
+ * indexTtlMs so writes made through other instances are eventually seen. Older rows stored without
+ * a fingerprint are filled in by a background backfill and are not matched until then.
+ */
+@Service
+public class NoteDedupService {
+
+    private static final Logger log = LoggerFactory.getLogger(NoteDedupService.class);
+    private static final int MAX_SUPPORTED_DISTANCE = 15;
+
+    private final NoteRepository noteRepository;
+    private final NoteDedupConfig config;
+    private final ShardedConnectionFactory shards;
+    private final TransactionalOperator transactionalOperator;
+    private final int maxDistance;
+    private final Map<String, CachedIndex> indexes;
+    // Index loads in flight, so concurrent lookups for the same user share one query
+    private final Map<String, Mono<SimHashIndex>> loading = new ConcurrentHashMap<>();
+
+    public NoteDedupService(NoteRepository noteRepository, NoteDedupConfig config,
+                            ShardedConnectionFactory shards, TransactionalOperator transactionalOperator) {
+        this.noteRepository = noteRepository;
+        this.config = config;
+        this.shards = shards;
+        this.transactionalOperator = transactionalOperator;
+        this.maxDistance = Math.max(0, Math.min(MAX_SUPPORTED_DISTANCE, config.getMaxDistance()));
+        int maxCachedUsers = Math.max(1, config.getMaxCachedUsers());
+        this.indexes = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedIndex> eldest) {
+                return size() > maxCachedUsers;
+            }
+        };
+    }
+
+    public NoteDedupConfig.DuplicatePolicy getPolicy() {
+        return config.getPolicy();
+    }
+
+    /**
+     * Fingerprint stored with every note, whether or not it is checked
+     */
+    public long fingerprint(String content) {
+        return SimHash.fingerprint(SimHash.normalize(content));
+    }
+
+    /**
+     * Whether a new note is looked up: dedup is on, its source is covered and its content is long enough
+     */
+    public boolean isChecked(Note note) {
+        if (!config.isEnabled() || note.getContent() == null) {
+            return false;
+        }
+        if (!config.getSources().isEmpty() && !config.getSources().contains(note.getSource())) {
+            return false;
+        }
+        return SimHash.normalize(note.getContent()).length >= config.getMinContentLength();
+    }
+
+    /**
+     * Id of the closest active note of the user within maxDistance bits of the fingerprint;
+     * must run routed to the user's shard
+     */
+    public Mono<String> findDuplicate(String userId, long fingerprint) {
+        return index(userId)
+                .flatMap(index -> Mono.justOrEmpty(index.nearest(fingerprint)))
+                .map(match -> {
+                    log.debug("Near-duplicate of note {} for userId: {}, distance: {}",
+                            match.getId(), userId, match.getDistance());
+                    return match.getId();
+                });
+    }
+
+    /**
+     * A note became active or its content changed; call after the write committed
+     */
+    public void added(String userId, String noteId, long fingerprint) {
+        SimHashIndex index = cached(userId);
+        if (index != null) {
+            index.add(noteId, fingerprint);
+        }
+    }
+
+    /**
+     * A note was deleted; call after the write committed
+     */
+    public void removed(String userId, String noteId) {
+        SimHashIndex index = cached(userId);
+        if (index != null) {
+            index.remove(noteId);
+        }
+    }
+
+    /**
+     * Drop a user's index after bulk writes, so the next lookup rebuilds it
+     */
+    public void invalidate(String userId) {
+        synchronized (indexes) {
+            indexes.remove(userId);
+        }
+    }
+
+    /**
+     * Fingerprint active notes stored without one, on every shard, a batch per transaction;
+     * returns the number of notes filled in
+     */
+    public Mono<Long> backfillFingerprints() {
+        int batchSize = Math.max(1, config.getBackfillBatchSize());
+        return Flux.range(0, shards.getShardCount())
+                .concatMap(shard -> Mono.defer(() -> backfillBatch(batchSize))
+                        // Filled rows drop out of the query, so each pass picks up the next batch
+                        .repeat()
+                        .takeUntil(found -> found < batchSize)
+                        .reduce(0L, Long::sum)
+                        .contextWrite(ShardedConnectionFactory.routeToShard(shard)))
+                .reduce(0L, Long::sum)
+                .doOnNext(filled -> {
+                    if (filled > 0) {
+                        log.info("Fingerprint backfill finished, notes: {}", filled);
+                    }
+                });
+    }
+
+    @Scheduled(fixedDelayString = "${notes.dedup.backfill-interval-ms:3600000}",
+            initialDelayString = "${notes.dedup.backfill-initial-delay-ms:10000}")
+    public Mono<Void> scheduledBackfill() {
+        if (!config.isBackfillEnabled()) {
+            return Mono.empty();
+        }
+        // Scheduled publishers are re-subscribed on every tick
+        return Mono.defer(this::backfillFingerprints)
+                .onErrorResume(e -> {
+                    log.error("Fingerprint backfill failed", e);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private Mono<Integer> backfillBatch(int batchSize) {
+        return noteRepository.findByStatusAndSimhashIsNull(Note.STATUS_ACTIVE, Limit.of(batchSize))
+                .collectList()
+                .flatMap(notes -> notes.isEmpty() ? Mono.just(0) : Flux.fromIterable(notes)
+                        .concatMap(note -> noteRepository.setSimhash(note.getId(), fingerprint(note.getContent())))
+                        .then()
+                        .as(transactionalOperator::transactional)
+                        // Cached indexes of these users lack the new fingerprints
+                        .doOnSuccess(ignored -> invalidateAll(notes))
+                        .thenReturn(notes.size()));
+    }
+
+    private void invalidateAll(List<Note> notes) {
+        synchronized (indexes) {
+            for (Note note : notes) {
+                indexes.remove(note.getUserId());
+            }
+        }
+    }
+
+    private SimHashIndex cached(String userId) {
+        synchronized (indexes) {
+            CachedIndex cached = indexes.get(userId);
+            return cached != null ? cached.index : null;
+        }
+    }
+
+    private Mono<SimHashIndex> index(String userId) {
+        return Mono.defer(() -> {
+            synchronized (indexes) {
+                CachedIndex cached = indexes.get(userId);
+                if (cached != null && System.nanoTime() < cached.expiresAtNanos) {
+                    return Mono.just(cached.index);
+                }
+            }
+            // Routing comes from the first subscriber, which is on the same user's shard as the others
+            return loading.computeIfAbsent(userId, id -> load(id)
+                    .doFinally(signal -> loading.remove(id))
+                    .cache());
+        });
+    }
+
+    private Mono<SimHashIndex> load(String userId) {
+        long expiresAtNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getIndexTtlMs());
+        SimHashIndex index = new SimHashIndex(maxDistance, 0);
+        return noteRepository.findActiveFingerprints(userId)
+                .doOnNext(row -> index.add(row.getId(), row.getSimhash()))
+                .then(Mono.fromSupplier(() -> {
+                    synchronized (indexes) {
+                        indexes.put(userId, new CachedIndex(index, expiresAtNanos));
+                    }
+                    log.debug("Near-duplicate index built for userId: {}, notes: {}", userId, index.size());
+                    return index;
+                }));
+    }
+
+    private static final class CachedIndex {
+
+        private final SimHashIndex index;
+        private final long expiresAtNanos;
+
+        CachedIndex(SimHashIndex index, long expiresAtNanos) {
+            this.index = index;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.phoebe.service;
+
+import com.phoebe.config.NoteFacetConfig;
+import com.phoebe.config.ShardedConnectionFactory;
+import com.phoebe.dto.FacetCount;
+import com.phoebe.dto.FacetRepairResponse;
+import com.phoebe.dto.NoteFacetSummary;
+import com.phoebe.entity.Note;
+import com.phoebe.entity.NoteFacet;
+import com.phoebe.repository.NoteFacetRepository;
+import com.phoebe.repository.NoteRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Per-user counts of active notes by source, tag and month.
+ * <p>
+ * Counters live in note_facets on the user's shard and are adjusted in the same transaction
+ * as every note write, so a facet summary reads O(facets) rows instead of all notes.
+ * A repair job recomputes them from the notes table.
+ */
+@Service
+public class NoteFacetService {
+
+    private static final Logger log = LoggerFactory.getLogger(NoteFacetService.class);
+    private static final DateTimeFormatter MONTH = DateTimeFormatter.ofPattern("yyyy-MM");
+    private static final int MAX_VALUE_LENGTH = 255;
+    private static final int CONFLICT_RETRIES = 3;
+
+    private final NoteFacetRepository facetRepository;
+    private final NoteRepository noteRepository;
+    private final NoteRecordMapper noteRecordMapper;
+    private final NoteFacetConfig config;
+    private final ShardedConnectionFactory shards;
+    private final TransactionalOperator transactionalOperator;
+
+    public NoteFacetService(NoteFacetRepository facetRepository, NoteRepository noteRepository,
+                            NoteRecordMapper noteRecordMapper, NoteFacetConfig config,
+                            ShardedConnectionFactory shards, TransactionalOperator transactionalOperator) {
+        this.facetRepository = facetRepository;
+        this.noteRepository = noteRepository;
+        this.noteRecordMapper = noteRecordMapper;
+        this.config = config;
+        this.shards = shards;
+        this.transactionalOperator = transactionalOperator;
+    }
+
+    /**
+     * Retry for transactions that update counters: a concurrent first insert of the same counter row fails
+     * the whole transaction, and running it again takes the increment path
+     */
+    public static Retry retryOnConflict() {
+        return Retry.max(CONFLICT_RETRIES).filter(DataIntegrityViolationException.class::isInstance);
+    }
+
+    /**
+     * Count newly stored active notes; must run in the same transaction as the insert
+     */
+    public Mono<Void> recordCreated(List<Note> notes) {
+        return facetRepository.applyDeltas(deltas(notes, 1));
+    }
+
+    /**
+     * Uncount a note (as read before it was deleted) that went from active to deleted;
+     * same transaction rule as {@link #recordCreated}
+     */
+    public Mono<Void> recordDeleted(Note note) {
+        return facetRepository.applyDeltas(deltas(List.of(note), -1));
+    }
+
+    public Mono<NoteFacetSummary> getSummary(String userId) {
+        return facetRepository.findByUserId(userId)
+                .collectList()
+                .map(this::toSummary)
+                .contextWrite(shards.routeToUser(userId));
+    }
+
+    /**
+     * Recompute one user's counters on the current shard.
+     * Deleting first means a concurrent note write either commits before the recount reads the notes,
+     * or finds its counter row gone and conflicts with the recount's insert and retries.
+     */
+    public Mono<Void> repairUser(String userId) {
+        Mono<Void> recount = facetRepository.deleteByUserId(userId)
+                .thenMany(facetRepository.findActiveFacetFields(userId))
+                .collectList()
+                .flatMap(notes -> facetRepository.insertAll(deltas(notes, 1)))
+                .then();
+        return recount
+                .as(transactionalOperator::transactional)
+                .retryWhen(retryOnConflict());
+    }
+
+    /**
+     * Recompute the counters of every user on every shard
+     */
+    public Mono<FacetRepairResponse> repairAll() {
+        AtomicLong repaired = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        return Flux.range(0, shards.getShardCount())
+                .concatMap(shard -> noteRepository.findDistinctUserIds()
+                        // Finish reading the user list so its cursor does not stay open during the repairs
+                        .collectList()
+                        .flatMapIterable(userIds -> userIds)
+                        .concatMap(userId -> repairUser(userId)
+                                .doOnSuccess(ignored -> repaired.incrementAndGet())
+                                .onErrorResume(e -> {
+                                    log.warn("Facet repair failed for userId: {}", userId, e);
+                                    failed.incrementAndGet();
+                                    return Mono.empty();
+                                }))
+                        .then(facetRepository.deleteOrphans())
+                        .contextWrite(ShardedConnectionFactory.routeToShard(shard)))
+                .then(Mono.fromSupplier(() -> new FacetRepairResponse(repaired.get(), failed.get())))
+                .doOnNext(result -> log.info("Facet repair finished, users repaired: {}, failed: {}",
+                        result.getUsersRepaired(), result.getUsersFailed()));
+    }
+
+    @Scheduled(fixedDelayString = "${notes.facets.repair-interval-ms:86400000}",
+            initialDelayString = "${notes.facets.repair-initial-delay-ms:60000}")
+    public Mono<Void> scheduledRepair() {
+        if (!config.isScheduledRepairEnabled()) {
+            return Mono.empty();
+        }
+        // Scheduled publishers are re-subscribed on every tick
+        return Mono.defer(this::repairAll)
+                .onErrorResume(e -> {
+                    log.error("Facet repair failed", e);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private List<NoteFacet> deltas(List<Note> notes, long delta) {
+        Map<String, NoteFacet> byKey = new LinkedHashMap<>();
+        for (Note note : notes) {
+            if (note.getStatus() == null || note.getStatus() != Note.STATUS_ACTIVE) {
+                continue;
+            }
+            for (NoteFacet facet : facetsOf(note)) {
+                byKey.merge(note.getUserId() + '\u0000' + facet.getFacet() + '\u0000' + facet.getValue(),
+                        new NoteFacet(note.getUserId(), facet.getFacet(), facet.getValue(), delta),
+                        (a, b) -> {
+                            a.setCount(a.getCount() + b.getCount());
+                            return a;
+                        });
+            }
+        }
+        return new ArrayList<>(byKey.values());
+    }
+
+    private List<NoteFacet> facetsOf(Note note) {
+        List<NoteFacet> facets = new ArrayList<>();
+        facets.add(new NoteFacet(note.getUserId(), NoteFacet.FACET_SOURCE, note.getSource(), 1));
+        if (note.getCreatedAt() != null) {
+            String month = note.getCreatedAt().withOffsetSameInstant(ZoneOffset.UTC).format(MONTH);
+            facets.add(new NoteFacet(note.getUserId(), NoteFacet.FACET_MONTH, month, 1));
+        }
+        Set<String> tags = new LinkedHashSet<>();
+        for (String tag : noteRecordMapper.parseTags(note.getTags())) {
+            if (tag == null || tag.isBlank()) {
+                continue;
+            }
+            String value = tag.strip();
+            tags.add(value.length() > MAX_VALUE_LENGTH ? value.substring(0, MAX_VALUE_LENGTH) : value);
+            if (tags.size() >= config.getMaxTags()) {
+                break;
+            }
+        }
+        for (String tag : tags) {
+            facets.add(new NoteFacet(note.getUserId(), NoteFacet.FACET_TAG, tag, 1));
+        }
+        return facets;
+    }
+
+    private NoteFacetSummary toSummary(List<NoteFacet> facets) {
+        Comparator<FacetCount> mostFirst = Comparator.comparingLong(FacetCount::getCount).reversed()
+                .thenComparing(FacetCount::getValue);
+        List<FacetCount> sources = countsOf(facets, NoteFacet.FACET_SOURCE, mostFirst);
+        List<FacetCount> tags = countsOf(facets, NoteFacet.FACET_TAG, mostFirst);
+        List<FacetCount> months = countsOf(facets, NoteFacet.FACET_MONTH,
+                Comparator.comparing(FacetCount::getValue).reversed());
+        // Every active note has exactly one source
+        long total = sources.stream().mapToLong(FacetCount::getCount).sum();
+        return new NoteFacetSummary(total, sources, tags, months);
+    }
+
+    private List<FacetCount> countsOf(List<NoteFacet> facets, String facet, Comparator<FacetCount> order) {
+        return facets.stream()
+                .filter(f -> facet.equals(f.getFacet()))
+                .map(f -> new FacetCount(f.getValue(), f.getCount()))
+                .sorted(order)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,69 @@
+package com.phoebe.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.phoebe.dto.NoteRecord;
+import com.phoebe.entity.Note;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Converts between the stored note (tags as a JSON string) and {@link NoteRecord} (tags as an array)
+ */
+@Component
+public class NoteRecordMapper {
+
+    private static final Logger log = LoggerFactory.getLogger(NoteRecordMapper.class);
+    private static final TypeReference<List<String>> TAG_LIST = new TypeReference<>() {
+    };
+
+    private final ObjectMapper objectMapper;
+
+    public NoteRecordMapper(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    public NoteRecord toRecord(Note note) {
+        return new NoteRecord(
+                note.getId(),
+                note.getUserId(),
+                note.getSource(),
+                note.getTitle(),
+                note.getContent(),
+                note.getComment(),
+                parseTags(note.getTags()),
+                note.getStatus(),
+                note.getCreatedAt(),
+                note.getIngestedAt()
+        );
+    }
+
+    public List<String> parseTags(String tags) {
+        if (tags == null || tags.isEmpty() || "[]".equals(tags)) {
+            return Collections.emptyList();
+        }
+        try {
+            return objectMapper.readValue(tags, TAG_LIST);
+        } catch (JsonProcessingException e) {
+            log.warn("Failed to parse tags: {}", tags);
+            return Collections.emptyList();
+        }
+    }
+
+    public String serializeTags(List<String> tags) {
+        if (tags == null || tags.isEmpty()) {
+            return "[]";
+        }
+        try {
+            return objectMapper.writeValueAsString(tags);
+        } catch (JsonProcessingException e) {
+            log.error("Failed to serialize tags", e);
+            return "[]";
+        }
+    }
+}
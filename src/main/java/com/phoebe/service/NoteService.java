@@ -1,36 +1,63 @@
 package com.phoebe.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.phoebe.config.ShardedConnectionFactory;
+import com.phoebe.dto.NoteRecord;
 import com.phoebe.dto.NoteRequest;
 import com.phoebe.dto.NoteResponse;
 import com.phoebe.entity.Note;
+import com.phoebe.entity.NoteChange;
+import com.phoebe.exception.DuplicateNoteException;
 import com.phoebe.repository.NoteRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
 public class NoteService {
 
     private static final Logger log = LoggerFactory.getLogger(NoteService.class);
+    private static final String SPAN_TRANSACTION = "r2dbc.transaction";
+    private static final String SPAN_INSERT = "r2dbc.insert";
+    private static final String SPAN_UPDATE = "r2dbc.update";
+    private static final String SPAN_QUERY = "r2dbc.query";
+    private static final String SPAN_CHANGE_LOG = "r2dbc.change_log";
+    private static final String SPAN_FACETS = "r2dbc.facets";
+    private static final String SPAN_DEDUP = "dedup.lookup";
+
     private final NoteRepository noteRepository;
-    private final ObjectMapper objectMapper;
+    private final NoteChangeService noteChangeService;
+    private final NoteFacetService noteFacetService;
+    private final NoteDedupService noteDedupService;
+    private final NoteRecordMapper noteRecordMapper;
+    private final ShardedConnectionFactory shards;
+    private final TransactionalOperator transactionalOperator;
 
-    public NoteService(NoteRepository noteRepository, ObjectMapper objectMapper) {
+    public NoteService(NoteRepository noteRepository, NoteChangeService noteChangeService,
+                       NoteFacetService noteFacetService, NoteDedupService noteDedupService,
+                       NoteRecordMapper noteRecordMapper, ShardedConnectionFactory shards,
+                       TransactionalOperator transactionalOperator) {
         this.noteRepository = noteRepository;
-        this.objectMapper = objectMapper;
+        this.noteChangeService = noteChangeService;
+        this.noteFacetService = noteFacetService;
+        this.noteDedupService = noteDedupService;
+        this.noteRecordMapper = noteRecordMapper;
+        this.shards = shards;
+        this.transactionalOperator = transactionalOperator;
     }
 
     public Mono<NoteResponse> createNote(NoteRequest request) {
         String id = UUID.randomUUID().toString();
-        String tagsJson = serializeTags(request.getTags());
+        String tagsJson = noteRecordMapper.serializeTags(request.getTags());
 
         Note note = new Note(
                 id,
@@ -44,59 +71,161 @@ public class NoteService {
                 request.getCreatedAt(),
                 OffsetDateTime.now()
         );
+        note.setSimhash(noteDedupService.fingerprint(note.getContent()));
 
         log.info("Creating note with id: {}, userId: {}, source: {}", id, request.getUserId(), request.getSource());
 
-        return noteRepository.save(note)
+        Mono<NoteResponse> create;
+        if (noteDedupService.isChecked(note)) {
+            create = Trace.span(SPAN_DEDUP, noteDedupService.findDuplicate(note.getUserId(), note.getSimhash()))
+                    .flatMap(duplicateOf -> handleDuplicate(note, duplicateOf))
+                    .switchIfEmpty(Mono.defer(() -> insert(note)));
+        } else {
+            create = insert(note);
+        }
+        return create.contextWrite(shards.routeToUser(request.getUserId()));
+    }
+
+    private Mono<NoteResponse> handleDuplicate(Note note, String duplicateOf) {
+        switch (noteDedupService.getPolicy()) {
+            case REJECT:
+                log.info("Rejected near-duplicate of note {} for userId: {}", duplicateOf, note.getUserId());
+                return Mono.error(new DuplicateNoteException(duplicateOf));
+            case MERGE:
+                return merge(duplicateOf, note);
+            default:
+                note.setDuplicateOf(duplicateOf);
+                return insert(note);
+        }
+    }
+
+    private Mono<NoteResponse> insert(Note note) {
+        Mono<NoteResponse> write = Trace.span(SPAN_INSERT, noteRepository.save(note))
+                .flatMap(saved -> Trace.span(SPAN_CHANGE_LOG,
+                                noteChangeService.record(saved.getUserId(), saved.getId(), NoteChange.OP_CREATE))
+                        .then(Trace.span(SPAN_FACETS, noteFacetService.recordCreated(List.of(saved))))
+                        .thenReturn(saved))
                 .map(saved -> {
                     log.info("Note saved successfully: {}", saved.getId());
-                    return NoteResponse.stored(saved.getId());
-                });
+                    NoteResponse response = NoteResponse.stored(saved.getId());
+                    response.setDuplicateOf(saved.getDuplicateOf());
+                    return response;
+                })
+                .as(transactionalOperator::transactional)
+                .retryWhen(NoteFacetService.retryOnConflict())
+                .doOnNext(response -> noteDedupService.added(note.getUserId(), note.getId(), note.getSimhash()));
+        return Trace.span(SPAN_TRANSACTION, write);
+    }
+
+    /**
+     * Fold a new note into an active near-duplicate: the newer title, content and comment win,
+     * tags are combined and createdAt is kept. Stores the note as new if the target is gone by now.
+     */
+    private Mono<NoteResponse> merge(String targetId, Note note) {
+        String userId = note.getUserId();
+        // Locked: the merged row and the facets uncounted below must come from the current version of the target
+        Mono<NoteResponse> write = Trace.span(SPAN_QUERY, noteRepository.findByIdAndUserIdForUpdate(targetId, userId))
+                .filter(existing -> existing.getStatus() == Note.STATUS_ACTIVE)
+                .flatMap(existing -> {
+                    Note merged = mergedNote(existing, note);
+                    // Conditional update: a concurrent delete of the target wins and the note is stored as new
+                    return Trace.span(SPAN_UPDATE, noteRepository.mergeActive(targetId, userId, merged.getTitle(),
+                                    merged.getContent(), merged.getComment(), merged.getTags(), merged.getSimhash(),
+                                    merged.getIngestedAt()))
+                            .filter(updated -> updated > 0)
+                            .flatMap(updated -> Trace.span(SPAN_CHANGE_LOG,
+                                            noteChangeService.record(userId, targetId, NoteChange.OP_UPDATE))
+                                    .then(Trace.span(SPAN_FACETS, noteFacetService.recordDeleted(existing)
+                                            .then(noteFacetService.recordCreated(List.of(merged)))))
+                                    .then(Mono.fromSupplier(() -> {
+                                        log.info("Note merged into near-duplicate: {}", targetId);
+                                        NoteResponse response = new NoteResponse(targetId, "merged");
+                                        response.setDuplicateOf(targetId);
+                                        return response;
+                                    })));
+                })
+                .as(transactionalOperator::transactional)
+                .retryWhen(NoteFacetService.retryOnConflict());
+        return Trace.span(SPAN_TRANSACTION, write)
+                .doOnNext(response -> noteDedupService.added(userId, targetId, note.getSimhash()))
+                .switchIfEmpty(Mono.defer(() -> insert(note)));
+    }
+
+    private Note mergedNote(Note existing, Note note) {
+        Set<String> tags = new LinkedHashSet<>(noteRecordMapper.parseTags(existing.getTags()));
+        tags.addAll(noteRecordMapper.parseTags(note.getTags()));
+        Note merged = new Note(
+                existing.getId(),
+                existing.getUserId(),
+                existing.getSource(),
+                note.getTitle() != null ? note.getTitle() : existing.getTitle(),
+                note.getContent(),
+                note.getComment() != null ? note.getComment() : existing.getComment(),
+                noteRecordMapper.serializeTags(new ArrayList<>(tags)),
+                Note.STATUS_ACTIVE,
+                existing.getCreatedAt(),
+                note.getIngestedAt()
+        );
+        merged.setSimhash(note.getSimhash());
+        return merged;
     }
 
     /**
      * Get all active notes for a user
      */
     public Flux<Note> getActiveNotes(String userId) {
-        return noteRepository.findActiveByUserId(userId);
+        return Trace.span(SPAN_QUERY, noteRepository.findActiveByUserId(userId))
+                .contextWrite(shards.routeToUser(userId));
     }
 
     /**
      * Get active notes by userId and source
      */
     public Flux<Note> getActiveNotesBySource(String userId, String source) {
-        return noteRepository.findByUserIdAndSourceAndStatus(userId, source, Note.STATUS_ACTIVE);
+        return Trace.span(SPAN_QUERY, noteRepository.findByUserIdAndSourceAndStatus(userId, source, Note.STATUS_ACTIVE))
+                .contextWrite(shards.routeToUser(userId));
+    }
+
+    /**
+     * Get active notes with tags as a real array, optionally filtered by source
+     */
+    public Flux<NoteRecord> getActiveNoteRecords(String userId, String source) {
+        Flux<Note> notes = source != null && !source.isBlank()
+                ? getActiveNotesBySource(userId, source)
+                : getActiveNotes(userId);
+        return notes.map(noteRecordMapper::toRecord);
     }
 
     /**
      * Soft delete a note (set status to 0)
      */
     public Mono<NoteResponse> deleteNote(String noteId, String userId) {
-        return noteRepository.findByIdAndUserId(noteId, userId)
+        // Locked: a merge committed after an unlocked read would leave its tags counted
+        Mono<NoteResponse> write = Trace.span(SPAN_QUERY, noteRepository.findByIdAndUserIdForUpdate(noteId, userId))
                 .flatMap(note -> {
                     if (note.getStatus() == Note.STATUS_DELETED) {
                         return Mono.just(new NoteResponse(noteId, "already_deleted"));
                     }
-                    note.setStatus(Note.STATUS_DELETED);
-                    note.setNew(false);  // Mark as existing entity for update
-                    return noteRepository.save(note)
-                            .map(saved -> {
-                                log.info("Note soft deleted: {}", noteId);
-                                return new NoteResponse(noteId, "deleted");
+                    // Conditional update: of two concurrent deletes only one changes the row, logs and uncounts it
+                    return Trace.span(SPAN_UPDATE, noteRepository.markDeleted(noteId, userId))
+                            .flatMap(updated -> {
+                                if (updated == 0) {
+                                    return Mono.just(new NoteResponse(noteId, "already_deleted"));
+                                }
+                                return Trace.span(SPAN_CHANGE_LOG,
+                                                noteChangeService.record(userId, noteId, NoteChange.OP_DELETE))
+                                        .then(Trace.span(SPAN_FACETS, noteFacetService.recordDeleted(note)))
+                                        .then(Mono.fromSupplier(() -> {
+                                            log.info("Note soft deleted: {}", noteId);
+                                            return new NoteResponse(noteId, "deleted");
+                                        }));
                             });
                 })
-                .switchIfEmpty(Mono.just(new NoteResponse(noteId, "not_found")));
-    }
-
-    private String serializeTags(List<String> tags) {
-        if (tags == null || tags.isEmpty()) {
-            return "[]";
-        }
-        try {
-            return objectMapper.writeValueAsString(tags);
-        } catch (JsonProcessingException e) {
-            log.error("Failed to serialize tags", e);
-            return "[]";
-        }
+                .switchIfEmpty(Mono.just(new NoteResponse(noteId, "not_found")))
+                .as(transactionalOperator::transactional)
+                .retryWhen(NoteFacetService.retryOnConflict())
+                .doOnNext(response -> noteDedupService.removed(userId, noteId));
+        return Trace.span(SPAN_TRANSACTION, write)
+                .contextWrite(shards.routeToUser(userId));
     }
 }
@@ -0,0 +1,144 @@
+package com.phoebe.service;
+
+import com.phoebe.config.ShardedConnectionFactory;
+import com.phoebe.dto.RebalanceResponse;
+import com.phoebe.entity.Note;
+import com.phoebe.entity.NoteChange;
+import com.phoebe.repository.NoteChangeRepository;
+import com.phoebe.repository.NoteFacetRepository;
+import com.phoebe.repository.NoteRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Moves users whose home shard changed (after shards were added) onto their new shard.
+ * <p>
+ * Each user is moved in idempotent steps, so a failed run can simply be repeated: mark the user
+ * moving on the old shard, which waits for their running writes and refuses new ones; copy notes
+ * that are not on the target yet; re-emit every note as a fresh change with a seq above anything
+ * the client saw on either shard and recount the user's facets there; then, in one transaction,
+ * delete the user from the old shard and mark them moved, which switches their routing to the
+ * target (see {@link ShardedConnectionFactory#resolveShard(String)}). A client resuming from an
+ * old cursor so receives the full current state instead of a feed copied with guessed seqs.
+ * Reads keep going to the old shard until then; a run that fails leaves its user read-only
+ * until it is repeated.
+ */
+@Service
+public class ShardRebalanceService {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardRebalanceService.class);
+    private static final int COPY_BATCH_SIZE = 500;
+
+    private final NoteRepository noteRepository;
+    private final NoteChangeRepository changeRepository;
+    private final NoteFacetRepository facetRepository;
+    private final NoteFacetService noteFacetService;
+    private final ShardedConnectionFactory shards;
+    private final TransactionalOperator transactionalOperator;
+
+    public ShardRebalanceService(NoteRepository noteRepository, NoteChangeRepository changeRepository,
+                                 NoteFacetRepository facetRepository, NoteFacetService noteFacetService,
+                                 ShardedConnectionFactory shards, TransactionalOperator transactionalOperator) {
+        this.noteRepository = noteRepository;
+        this.changeRepository = changeRepository;
+        this.facetRepository = facetRepository;
+        this.noteFacetService = noteFacetService;
+        this.shards = shards;
+        this.transactionalOperator = transactionalOperator;
+    }
+
+    public Mono<RebalanceResponse> rebalance() {
+        AtomicLong usersMoved = new AtomicLong();
+        AtomicLong notesMoved = new AtomicLong();
+        return Flux.range(0, shards.getShardCount())
+                .concatMap(source -> noteRepository.findDistinctUserIds()
+                        .contextWrite(ShardedConnectionFactory.routeToShard(source))
+                        .filter(userId -> shards.shardOf(userId) != source)
+                        // Finish reading the user list before deleting from the same table
+                        .collectList()
+                        .flatMapIterable(userIds -> userIds)
+                        .concatMap(userId -> moveUser(userId, source, shards.shardOf(userId))
+                                .doOnNext(moved -> {
+                                    usersMoved.incrementAndGet();
+                                    notesMoved.addAndGet(moved);
+                                })))
+                .then(Mono.fromSupplier(() -> new RebalanceResponse(usersMoved.get(), notesMoved.get())))
+                .doOnNext(result -> log.info("Shard rebalance finished, users moved: {}, notes moved: {}",
+                        result.getUsersMoved(), result.getNotesMoved()));
+    }
+
+    private Mono<Long> moveUser(String userId, int source, int target) {
+        log.info("Moving userId: {} from shard {} to shard {}", userId, source, target);
+        return markMoving(userId, source)
+                .then(copyNotes(userId, source, target))
+                .flatMap(copied -> reemitChanges(userId, source, target)
+                        // Counters are recomputed from the copied notes rather than copied themselves
+                        .then(noteFacetService.repairUser(userId).contextWrite(ShardedConnectionFactory.routeToShard(target)))
+                        .then(deleteFromSource(userId, source))
+                        .thenReturn(copied));
+    }
+
+    private Mono<Void> markMoving(String userId, int source) {
+        return changeRepository.setMoveState(userId, ShardedConnectionFactory.MOVE_STATE_MOVING)
+                .as(transactionalOperator::transactional)
+                .retryWhen(NoteFacetService.retryOnConflict())
+                .contextWrite(ShardedConnectionFactory.routeToShard(source));
+    }
+
+    private Mono<Long> copyNotes(String userId, int source, int target) {
+        return noteRepository.findByUserId(userId)
+                .contextWrite(ShardedConnectionFactory.routeToShard(source))
+                .buffer(COPY_BATCH_SIZE)
+                .concatMap(batch -> insertMissing(batch).contextWrite(ShardedConnectionFactory.routeToShard(target)))
+                .reduce(0L, Long::sum);
+    }
+
+    private Mono<Long> insertMissing(List<Note> batch) {
+        List<String> ids = batch.stream().map(Note::getId).collect(Collectors.toList());
+        return noteRepository.findAllById(ids)
+                .map(Note::getId)
+                .collect(Collectors.toSet())
+                .flatMap(existing -> noteRepository.insertAll(batch.stream()
+                        .filter(note -> !existing.contains(note.getId()))
+                        .collect(Collectors.toList())));
+    }
+
+    private Mono<Void> reemitChanges(String userId, int source, int target) {
+        Mono<Long> sourceLastSeq = changeRepository.findLastSeq(userId)
+                .contextWrite(ShardedConnectionFactory.routeToShard(source));
+        OffsetDateTime now = OffsetDateTime.now();
+
+        // Raising the floor first puts the fresh changes above every cursor handed out by the old shard
+        return sourceLastSeq
+                .flatMap(lastSeq -> changeRepository.raiseSeqFloor(userId, lastSeq)
+                        .retryWhen(NoteFacetService.retryOnConflict()))
+                .thenMany(noteRepository.findByUserId(userId))
+                .map(note -> new NoteChange(userId, note.getId(),
+                        note.getStatus() == Note.STATUS_ACTIVE ? NoteChange.OP_CREATE : NoteChange.OP_DELETE, now))
+                .buffer(COPY_BATCH_SIZE)
+                .concatMap(batch -> changeRepository.insertAll(batch)
+                        .as(transactionalOperator::transactional)
+                        .retryWhen(NoteFacetService.retryOnConflict()))
+                .contextWrite(ShardedConnectionFactory.routeToShard(target))
+                .then();
+    }
+
+    private Mono<Void> deleteFromSource(String userId, int source) {
+        // The sequence row stays behind as the moved marker
+        return changeRepository.deleteByUserId(userId)
+                .then(facetRepository.deleteByUserId(userId))
+                .then(noteRepository.deleteByUserId(userId))
+                .then(changeRepository.setMoveState(userId, ShardedConnectionFactory.MOVE_STATE_MOVED))
+                .as(transactionalOperator::transactional)
+                .contextWrite(ShardedConnectionFactory.routeToShard(source));
+    }
+}
@@ -0,0 +1,63 @@
+package com.phoebe.service;
+
+import java.text.Normalizer;
+
+/**
+ * 64-bit SimHash over character shingles of normalized text.
+ * <p>
+ * Texts that differ only in case, whitespace, punctuation or a few edited passages
+ * end up a small Hamming distance apart.
+ */
+final class SimHash {
+
+    // Character n-grams instead of words, since Chinese text has no spaces
+    private static final int SHINGLE_LENGTH = 4;
+
+    private SimHash() {
+    }
+
+    /**
+     * Letters and digits only, NFKC-folded and lower-cased, as code points
+     */
+    static int[] normalize(String text) {
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase();
+        return folded.codePoints().filter(Character::isLetterOrDigit).toArray();
+    }
+
+    static long fingerprint(int[] codePoints) {
+        int[] weights = new int[64];
+        int shingles = Math.max(1, codePoints.length - SHINGLE_LENGTH + 1);
+        for (int start = 0; start < shingles; start++) {
+            long hash = shingleHash(codePoints, start, Math.min(codePoints.length, start + SHINGLE_LENGTH));
+            for (int bit = 0; bit < 64; bit++) {
+                weights[bit] += ((hash >>> bit) & 1) != 0 ? 1 : -1;
+            }
+        }
+        long fingerprint = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (weights[bit] > 0) {
+                fingerprint |= 1L << bit;
+            }
+        }
+        return fingerprint;
+    }
+
+    static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    private static long shingleHash(int[] codePoints, int from, int to) {
+        // FNV-1a, then a finalizer so every output bit depends on every input bit
+        long hash = 0xcbf29ce484222325L;
+        for (int i = from; i < to; i++) {
+            hash ^= codePoints[i];
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,171 @@
+package com.phoebe.service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Finds the closest stored 64-bit fingerprint within a Hamming distance, without scanning every entry.
+ * <p>
+ * The fingerprint is split into maxDistance + 1 bands. Two fingerprints at most maxDistance bits apart
+ * differ in at most maxDistance bands, so they agree exactly on at least one band: looking up each band
+ * of the query in its own hash table finds every match, and only candidates sharing a band are compared.
+ * <p>
+ * Entries are kept in parallel arrays with array-based bucket chains. Each slot takes 8 bytes for the
+ * fingerprint, an id reference, and per band a 4-byte bucket head and a 4-byte chain link, so about
+ * 12 + 8 * bands bytes, plus the id string and its entry in the id-to-slot map. Capacity is a power of
+ * two, at most twice the entries. Removal leaves a hole that is reclaimed when the arrays are rebuilt.
+ */
+final class SimHashIndex {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int EMPTY = -1;
+
+    private final int maxDistance;
+    private final int bands;
+    private final int[] bandShift;
+    private final long[] bandMask;
+
+    private long[] hashes;
+    private String[] ids;
+    // Per band: first entry of each bucket, and the next entry in the same bucket
+    private int[][] heads;
+    private int[][] next;
+    private final Map<String, Integer> slots = new HashMap<>();
+    private int size;
+    private int live;
+
+    SimHashIndex(int maxDistance, int expectedSize) {
+        this.maxDistance = maxDistance;
+        this.bands = maxDistance + 1;
+        this.bandShift = new int[bands];
+        this.bandMask = new long[bands];
+        int width = 64 / bands;
+        for (int band = 0; band < bands; band++) {
+            bandShift[band] = band * width;
+            // The last band takes the remaining bits
+            int bits = band == bands - 1 ? 64 - band * width : width;
+            bandMask[band] = bits == 64 ? -1L : (1L << bits) - 1;
+        }
+        allocate(tableSize(expectedSize));
+    }
+
+    /**
+     * Add an entry, replacing any earlier fingerprint stored under the same id
+     */
+    synchronized void add(String id, long hash) {
+        remove(id);
+        if (size == hashes.length) {
+            // Compact in place when at least half the slots are holes, otherwise grow
+            rebuild(live * 2 <= size ? hashes.length : hashes.length * 2);
+        }
+        insert(size++, id, hash);
+        live++;
+    }
+
+    synchronized void remove(String id) {
+        Integer slot = slots.remove(id);
+        if (slot != null) {
+            ids[slot] = null;
+            live--;
+        }
+    }
+
+    synchronized int size() {
+        return live;
+    }
+
+    /**
+     * The closest entry within maxDistance bits, or null
+     */
+    synchronized Match nearest(long hash) {
+        int bestSlot = EMPTY;
+        int bestDistance = maxDistance + 1;
+        int mask = hashes.length - 1;
+        for (int band = 0; band < bands; band++) {
+            long key = bandOf(hash, band);
+            for (int slot = heads[band][bucket(key, mask)]; slot != EMPTY; slot = next[band][slot]) {
+                if (ids[slot] == null || bandOf(hashes[slot], band) != key) {
+                    continue;
+                }
+                int distance = SimHash.distance(hash, hashes[slot]);
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    bestSlot = slot;
+                }
+            }
+        }
+        return bestSlot == EMPTY ? null : new Match(ids[bestSlot], bestDistance);
+    }
+
+    private void insert(int slot, String id, long hash) {
+        hashes[slot] = hash;
+        ids[slot] = id;
+        slots.put(id, slot);
+        int mask = hashes.length - 1;
+        for (int band = 0; band < bands; band++) {
+            int bucket = bucket(bandOf(hash, band), mask);
+            next[band][slot] = heads[band][bucket];
+            heads[band][bucket] = slot;
+        }
+    }
+
+    private void rebuild(int capacity) {
+        long[] oldHashes = hashes;
+        String[] oldIds = ids;
+        int oldSize = size;
+        allocate(capacity);
+        size = 0;
+        for (int slot = 0; slot < oldSize; slot++) {
+            if (oldIds[slot] != null) {
+                insert(size++, oldIds[slot], oldHashes[slot]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        hashes = new long[capacity];
+        ids = new String[capacity];
+        heads = new int[bands][capacity];
+        next = new int[bands][capacity];
+        for (int[] table : heads) {
+            Arrays.fill(table, EMPTY);
+        }
+    }
+
+    private long bandOf(long hash, int band) {
+        return (hash >>> bandShift[band]) & bandMask[band];
+    }
+
+    private static int bucket(long key, int mask) {
+        long mixed = key * 0x9e3779b97f4a7c15L;
+        return (int) (mixed ^ (mixed >>> 32)) & mask;
+    }
+
+    private static int tableSize(int expectedSize) {
+        int capacity = INITIAL_CAPACITY;
+        while (capacity < expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    static final class Match {
+
+        private final String id;
+        private final int distance;
+
+        Match(String id, int distance) {
+            this.id = id;
+            this.distance = distance;
+        }
+
+        String getId() {
+            return id;
+        }
+
+        int getDistance() {
+            return distance;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.phoebe.service;
+
+import com.phoebe.dto.SpanRecord;
+import com.phoebe.dto.TraceRecord;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One sampled request, carried in the Reactor context under {@link #CONTEXT_KEY}.
+ * <p>
+ * Spans may be recorded from any thread. Requests that were not sampled see {@link #NOOP},
+ * so callers never need to check.
+ */
+public final class Trace {
+
+    public static final String CONTEXT_KEY = Trace.class.getName();
+
+    static final Trace NOOP = new Trace(null, null);
+
+    private static final String SPAN_VALIDATION = "request.decode_validate";
+    private static final String SPAN_DISPATCH = "request.dispatch";
+    private static final String SPAN_RESPONSE = "response.serialize_write";
+
+    private final String traceId;
+    private final String name;
+    private final long startNanos = System.nanoTime();
+    private final OffsetDateTime startedAt = OffsetDateTime.now();
+    private final ConcurrentLinkedQueue<SpanRecord> spans = new ConcurrentLinkedQueue<>();
+    private volatile long handlerDoneNanos;
+
+    Trace(String traceId, String name) {
+        this.traceId = traceId;
+        this.name = name;
+    }
+
+    public static Trace current(ContextView context) {
+        return context.getOrDefault(CONTEXT_KEY, NOOP);
+    }
+
+    public boolean isSampled() {
+        return this != NOOP;
+    }
+
+    public String getTraceId() {
+        return traceId;
+    }
+
+    /**
+     * Record a span from the given {@link System#nanoTime()} until now; a zero start is ignored
+     */
+    public void spanSince(String spanName, long fromNanos) {
+        if (this == NOOP || fromNanos == 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        spans.add(new SpanRecord(spanName, micros(fromNanos - startNanos), micros(now - fromNanos)));
+    }
+
+    /**
+     * Time a Mono from subscription until it terminates or is cancelled
+     */
+    public static <T> Mono<T> span(String spanName, Mono<T> source) {
+        return Mono.deferContextual(context -> {
+            Trace trace = current(context);
+            if (!trace.isSampled()) {
+                return source;
+            }
+            long start = System.nanoTime();
+            // Not doFinally: that runs after downstream has seen the signal, possibly after the trace was recorded
+            return source.doOnTerminate(() -> trace.spanSince(spanName, start))
+                    .doOnCancel(() -> trace.spanSince(spanName, start));
+        });
+    }
+
+    /**
+     * Time a Flux from subscription until it terminates or is cancelled
+     */
+    public static <T> Flux<T> span(String spanName, Flux<T> source) {
+        return Flux.deferContextual(context -> {
+            Trace trace = current(context);
+            if (!trace.isSampled()) {
+                return source;
+            }
+            long start = System.nanoTime();
+            return source.doOnTerminate(() -> trace.spanSince(spanName, start))
+                    .doOnCancel(() -> trace.spanSince(spanName, start));
+        });
+    }
+
+    /**
+     * Wrap a controller result: everything before subscription was body decoding and validation,
+     * everything after the result is ready is response serialization and write
+     */
+    public static <T> Mono<T> handler(Mono<T> result) {
+        return handler(result, SPAN_VALIDATION);
+    }
+
+    public static <T> Flux<T> handler(Flux<T> result) {
+        return handler(result, SPAN_VALIDATION);
+    }
+
+    /**
+     * Wrap the result of a controller whose request body is a stream: the body is only decoded while
+     * the result runs, so the time before subscription is just routing and argument resolution
+     */
+    public static <T> Mono<T> streamingHandler(Mono<T> result) {
+        return handler(result, SPAN_DISPATCH);
+    }
+
+    public static <T> Flux<T> streamingHandler(Flux<T> result) {
+        return handler(result, SPAN_DISPATCH);
+    }
+
+    private static <T> Mono<T> handler(Mono<T> result, String requestSpan) {
+        return Mono.deferContextual(context -> {
+            Trace trace = current(context);
+            if (!trace.isSampled()) {
+                return result;
+            }
+            trace.spanSince(requestSpan, trace.startNanos);
+            return result.doOnSuccess(value -> trace.handlerDoneNanos = System.nanoTime());
+        });
+    }
+
+    private static <T> Flux<T> handler(Flux<T> result, String requestSpan) {
+        return Flux.deferContextual(context -> {
+            Trace trace = current(context);
+            if (!trace.isSampled()) {
+                return result;
+            }
+            trace.spanSince(requestSpan, trace.startNanos);
+            return result.doOnComplete(() -> trace.handlerDoneNanos = System.nanoTime());
+        });
+    }
+
+    TraceRecord finish(int status, String outcome) {
+        spanSince(SPAN_RESPONSE, handlerDoneNanos);
+        List<SpanRecord> sorted = new ArrayList<>(spans);
+        sorted.sort(Comparator.comparingLong(SpanRecord::getStartUs));
+        return new TraceRecord(traceId, name, status, outcome, startedAt, micros(System.nanoTime() - startNanos), sorted);
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
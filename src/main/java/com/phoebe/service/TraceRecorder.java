@@ -0,0 +1,71 @@
+package com.phoebe.service;
+
+import com.phoebe.config.TracingConfig;
+import com.phoebe.dto.TraceRecord;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Samples requests and keeps the most recent finished traces in a fixed-size ring.
+ * <p>
+ * Writers claim a slot with a single atomic increment and overwrite the oldest trace,
+ * so recording never blocks and memory stays bounded; readers take a best-effort snapshot.
+ */
+@Component
+public class TraceRecorder {
+
+    private final TracingConfig config;
+    private final AtomicReferenceArray<TraceRecord> ring;
+    private final int mask;
+    private final AtomicLong cursor = new AtomicLong();
+
+    public TraceRecorder(TracingConfig config) {
+        this.config = config;
+        int capacity = Integer.highestOneBit(Math.max(1, config.getCapacity() - 1)) << 1;
+        this.ring = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Start a trace if this request is sampled, otherwise {@link Trace#NOOP}
+     */
+    public Trace start(String name) {
+        if (!config.isEnabled() || ThreadLocalRandom.current().nextDouble() >= config.getSampleRate()) {
+            return Trace.NOOP;
+        }
+        return new Trace(Long.toHexString(ThreadLocalRandom.current().nextLong()), name);
+    }
+
+    public void finish(Trace trace, int status, String outcome) {
+        if (!trace.isSampled()) {
+            return;
+        }
+        TraceRecord record = trace.finish(status, outcome);
+        ring.set((int) (cursor.getAndIncrement() & mask), record);
+    }
+
+    /**
+     * Most recent traces first, optionally only those slower than minDurationMs or whose name contains the given text
+     */
+    public List<TraceRecord> find(long minDurationMs, String name, int limit) {
+        long minDurationUs = TimeUnit.MILLISECONDS.toMicros(minDurationMs);
+        List<TraceRecord> result = new ArrayList<>();
+        long end = cursor.get();
+        for (long i = end - 1; i >= Math.max(0, end - ring.length()) && result.size() < limit; i--) {
+            TraceRecord record = ring.get((int) (i & mask));
+            // A slot may still be unwritten, or already overwritten by a newer trace
+            if (record == null || record.getDurationUs() < minDurationUs
+                    || (name != null && !record.getName().contains(name))) {
+                continue;
+            }
+            result.add(record);
+        }
+        return result;
+    }
+}
@@ -17,3 +17,43 @@ CREATE INDEX IF NOT EXISTS idx_notes_user_id ON notes(user_id);
 CREATE INDEX IF NOT EXISTS idx_notes_user_status ON notes(user_id, status);
 CREATE INDEX IF NOT EXISTS idx_notes_source ON notes(source);
 CREATE INDEX IF NOT EXISTS idx_notes_created_at ON notes(created_at);
+
+-- Near-duplicate detection: SimHash of the normalized content (filled by a background backfill for older rows),
+-- and the note a linked near-duplicate was detected against
+ALTER TABLE notes ADD COLUMN IF NOT EXISTS simhash BIGINT;
+ALTER TABLE notes ADD COLUMN IF NOT EXISTS duplicate_of VARCHAR(36);
+
+-- Change feed: one row per create / update / soft-delete.
+-- seq counts per user and is taken from note_change_seqs in the writing transaction; the row lock
+-- makes a user's changes commit in seq order, so a reader never sees seq n + 1 before seq n.
+CREATE TABLE IF NOT EXISTS note_changes (
+    user_id VARCHAR(36) NOT NULL,
+    seq BIGINT NOT NULL,
+    note_id VARCHAR(36) NOT NULL,
+    op VARCHAR(10) NOT NULL,        -- create / update / delete
+    changed_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (user_id, seq)
+);
+
+CREATE INDEX IF NOT EXISTS idx_note_changes_user_note ON note_changes(user_id, note_id);
+
+-- Per-user feed state: last seq handed out, and the highest seq dropped by tombstone purging
+-- (clients behind it must resync)
+CREATE TABLE IF NOT EXISTS note_change_seqs (
+    user_id VARCHAR(36) PRIMARY KEY,
+    last_seq BIGINT NOT NULL,
+    purged_through_seq BIGINT NOT NULL DEFAULT 0
+);
+
+-- Set on a user's old shard while a rebalance moves them away: 'moving' refuses writes there,
+-- 'moved' sends the user's requests to their new shard
+ALTER TABLE note_change_seqs ADD COLUMN IF NOT EXISTS move_state VARCHAR(10);
+
+-- Active note counts per user and source / tag / month, kept up to date by every note write
+CREATE TABLE IF NOT EXISTS note_facets (
+    user_id VARCHAR(36) NOT NULL,
+    facet VARCHAR(10) NOT NULL,         -- source / tag / month
+    facet_value VARCHAR(255) NOT NULL,
+    note_count BIGINT NOT NULL,
+    PRIMARY KEY (user_id, facet, facet_value)
+);
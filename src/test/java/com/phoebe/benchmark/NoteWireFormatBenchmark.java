@@ -0,0 +1,177 @@
+package com.phoebe.benchmark;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.phoebe.dto.NoteRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode / decode cost and size of a page of notes in the wire formats of the note endpoints:
+ * a JSON array, NDJSON lines and a sequence of Smile values (application/stream+x-jackson-smile).
+ * Mappers are built the way WebFlux builds its codec mappers.
+ * <p>
+ * Run with:
+ * <pre>
+ * mvn -B test-compile dependency:build-classpath -Dmdep.outputFile=target/test-cp.txt -Dmdep.includeScope=test
+ * java -cp target/test-classes:target/classes:$(cat target/test-cp.txt) com.phoebe.benchmark.NoteWireFormatBenchmark
+ * </pre>
+ * Encoded sizes are printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NoteWireFormatBenchmark {
+
+    private static final int NOTES = 1000;
+
+    /** typical: short notes with a few tags; content-heavy: ~40 KB of content per note */
+    @Param({"typical", "content-heavy"})
+    private String shape;
+
+    private ObjectWriter jsonArrayWriter;
+    private ObjectReader jsonArrayReader;
+    private ObjectWriter jsonWriter;
+    private ObjectReader jsonReader;
+    private ObjectWriter smileWriter;
+    private ObjectReader smileReader;
+
+    private List<NoteRecord> notes;
+    private byte[] jsonArray;
+    private byte[] ndjson;
+    private byte[] smile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        ObjectMapper json = Jackson2ObjectMapperBuilder.json().build();
+        ObjectMapper smileMapper = Jackson2ObjectMapperBuilder.smile().build();
+        jsonArrayWriter = json.writerFor(json.getTypeFactory().constructCollectionType(List.class, NoteRecord.class));
+        jsonArrayReader = json.readerForListOf(NoteRecord.class);
+        jsonWriter = json.writerFor(NoteRecord.class);
+        jsonReader = json.readerFor(NoteRecord.class);
+        smileWriter = smileMapper.writerFor(NoteRecord.class);
+        smileReader = smileMapper.readerFor(NoteRecord.class);
+
+        notes = generate(shape, new Random(42));
+        jsonArray = encodeJsonArray();
+        ndjson = encodeNdjson();
+        smile = encodeSmile();
+        System.out.printf("%n%s bytes per note: json %d, ndjson %d, smile %d%n", shape,
+                jsonArray.length / NOTES, ndjson.length / NOTES, smile.length / NOTES);
+    }
+
+    @Benchmark
+    public byte[] encodeJsonArray() throws IOException {
+        return jsonArrayWriter.writeValueAsBytes(notes);
+    }
+
+    @Benchmark
+    public byte[] encodeNdjson() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (NoteRecord note : notes) {
+            out.write(jsonWriter.writeValueAsBytes(note));
+            out.write('\n');
+        }
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] encodeSmile() throws IOException {
+        // WebFlux writes one Smile document per element of a streamed Flux
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (NoteRecord note : notes) {
+            out.write(smileWriter.writeValueAsBytes(note));
+        }
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public List<NoteRecord> decodeJsonArray() throws IOException {
+        return jsonArrayReader.readValue(jsonArray);
+    }
+
+    @Benchmark
+    public List<NoteRecord> decodeNdjson() throws IOException {
+        return readAll(jsonReader, ndjson);
+    }
+
+    @Benchmark
+    public List<NoteRecord> decodeSmile() throws IOException {
+        return readAll(smileReader, smile);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(NoteWireFormatBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    private static List<NoteRecord> readAll(ObjectReader reader, byte[] bytes) throws IOException {
+        List<NoteRecord> result = new ArrayList<>(NOTES);
+        try (MappingIterator<NoteRecord> values = reader.readValues(bytes)) {
+            while (values.hasNextValue()) {
+                result.add(values.nextValue());
+            }
+        }
+        return result;
+    }
+
+    private static List<NoteRecord> generate(String shape, Random random) {
+        int contentLength = "content-heavy".equals(shape) ? 40_000 : 300;
+        OffsetDateTime createdAt = OffsetDateTime.of(2024, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+        List<NoteRecord> result = new ArrayList<>(NOTES);
+        for (int i = 0; i < NOTES; i++) {
+            result.add(new NoteRecord(
+                    new UUID(random.nextLong(), random.nextLong()).toString(),
+                    "user-" + random.nextInt(100),
+                    "web",
+                    "Note title " + i,
+                    words(random, contentLength),
+                    i % 3 == 0 ? words(random, 80) : null,
+                    List.of("tag" + random.nextInt(20), "tag" + random.nextInt(20), "reading"),
+                    1,
+                    createdAt.plusMinutes(i),
+                    createdAt.plusMinutes(i).plusSeconds(5)));
+        }
+        return result;
+    }
+
+    private static String words(Random random, int length) {
+        StringBuilder text = new StringBuilder(length + 12);
+        while (text.length() < length) {
+            int word = 2 + random.nextInt(9);
+            for (int i = 0; i < word; i++) {
+                text.append((char) ('a' + random.nextInt(26)));
+            }
+            text.append(' ');
+        }
+        return text.toString();
+    }
+}
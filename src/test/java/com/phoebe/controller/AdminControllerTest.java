@@ -0,0 +1,64 @@
+package com.phoebe.controller;
+
+import com.phoebe.config.ShardedConnectionFactory;
+import com.phoebe.entity.Note;
+import com.phoebe.repository.NoteRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "notes.sharding.shards[0].url=r2dbc:h2:mem:///admin0;DB_CLOSE_DELAY=-1",
+        "notes.sharding.shards[0].username=sa",
+        "notes.sharding.shards[1].url=r2dbc:h2:mem:///admin1;DB_CLOSE_DELAY=-1",
+        "notes.sharding.shards[1].username=sa"
+})
+@AutoConfigureWebTestClient
+class AdminControllerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private NoteRepository noteRepository;
+
+    @Test
+    void newestNotesAreMergedAcrossShards() {
+        String source = "adm" + UUID.randomUUID().toString().substring(0, 8);
+        OffsetDateTime base = OffsetDateTime.parse("2024-01-01T00:00:00Z");
+        // Alternate shards so the newest notes come from both
+        for (int i = 0; i < 6; i++) {
+            Note note = new Note(UUID.randomUUID().toString(), "user-" + i, source, null, "content " + i, null, null,
+                    Note.STATUS_ACTIVE, base.plusMinutes(i), base);
+            noteRepository.insertAll(List.of(note)).contextWrite(ShardedConnectionFactory.routeToShard(i % 2)).block();
+        }
+
+        List<Note> notes = webTestClient.get().uri("/api/v1/admin/notes?source={source}&limit=3", source)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Note.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(notes).extracting(Note::getContent).containsExactly("content 5", "content 4", "content 3");
+    }
+
+    @Test
+    void limitOutOfRangeIsRejected() {
+        webTestClient.get().uri("/api/v1/admin/notes?limit=-1")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("$.details.limit").exists();
+        webTestClient.get().uri("/api/v1/admin/notes?limit=1001")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+}
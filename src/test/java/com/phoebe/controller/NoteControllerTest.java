@@ -0,0 +1,92 @@
+package com.phoebe.controller;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.phoebe.dto.NoteRequest;
+import com.phoebe.dto.NoteResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "notes.sharding.shards[0].url=r2dbc:h2:mem:///controllertest;DB_CLOSE_DELAY=-1",
+        "notes.sharding.shards[0].username=sa"
+})
+@AutoConfigureWebTestClient
+class NoteControllerTest {
+
+    private static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+    private static final MediaType STREAM_SMILE = MediaType.parseMediaType("application/stream+x-jackson-smile");
+
+    private final ObjectMapper json = Jackson2ObjectMapperBuilder.json().build();
+    private final ObjectMapper smile = Jackson2ObjectMapperBuilder.smile().build();
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Test
+    void smileCreateAnswersInSmileForAnyAccept() throws IOException {
+        String userId = UUID.randomUUID().toString();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(smile.writeValueAsBytes(request(userId, "first smile note")));
+        body.write(smile.writeValueAsBytes(request(userId, "second smile note")));
+
+        byte[] response = webTestClient.post().uri("/api/v1/notes")
+                .contentType(STREAM_SMILE)
+                .accept(MediaType.ALL)
+                .bodyValue(body.toByteArray())
+                .exchange()
+                .expectStatus().isCreated()
+                .expectHeader().contentType(STREAM_SMILE)
+                .expectBody(byte[].class)
+                .returnResult()
+                .getResponseBody();
+
+        try (MappingIterator<NoteResponse> results = smile.readerFor(NoteResponse.class).readValues(response)) {
+            assertThat(results.readAll()).extracting(NoteResponse::getStatus).containsOnly("stored");
+        }
+    }
+
+    @Test
+    void ndjsonCreateAnswersInNdjson() throws IOException {
+        String userId = UUID.randomUUID().toString();
+        String body = json.writeValueAsString(request(userId, "ndjson note")) + "\n";
+
+        webTestClient.post().uri("/api/v1/notes")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .accept(MediaType.ALL)
+                .bodyValue(body)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectHeader().contentType(MediaType.APPLICATION_NDJSON);
+    }
+
+    @Test
+    void plainSmileCreateKeepsPlainSmile() throws IOException {
+        String userId = UUID.randomUUID().toString();
+
+        webTestClient.post().uri("/api/v1/notes")
+                .contentType(SMILE)
+                .bodyValue(smile.writeValueAsBytes(request(userId, "plain smile note")))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectHeader().contentType(SMILE);
+    }
+
+    private static NoteRequest request(String userId, String content) {
+        return new NoteRequest(userId, "web", null, content, null, List.of("test"),
+                OffsetDateTime.parse("2024-01-01T00:00:00Z"));
+    }
+}
@@ -0,0 +1,184 @@
+package com.phoebe.service;
+
+import com.alibaba.dashscope.aigc.generation.GenerationResult;
+import com.alibaba.dashscope.common.DashScopeResult;
+import com.alibaba.dashscope.common.Status;
+import com.alibaba.dashscope.exception.ApiException;
+import com.google.gson.JsonParser;
+import com.phoebe.config.ChatBatchConfig;
+import com.phoebe.config.DashScopeConfig;
+import com.phoebe.dto.ChatBatchResult;
+import com.phoebe.dto.ChatBatchSummary;
+import com.phoebe.dto.ChatRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.net.SocketTimeoutException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChatBatchServiceTest {
+
+    private static final long BACKOFF_MS = 40;
+
+    private ChatBatchService service;
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) {
+            service.destroy();
+        }
+    }
+
+    @Test
+    void retryableFailuresAreRetriedWithBackoffAndTotalled() {
+        Map<String, AtomicInteger> calls = new ConcurrentHashMap<>();
+        service = service(10, message -> {
+            int call = calls.computeIfAbsent(message, key -> new AtomicInteger()).incrementAndGet();
+            switch (message) {
+                case "throttled-once":
+                    if (call == 1) {
+                        throw apiError(429);
+                    }
+                    return result("ok", 10, 5);
+                case "bad-request":
+                    throw apiError(400);
+                case "read-timeout":
+                    throw new ApiException(new SocketTimeoutException("timeout"));
+                default:
+                    return result("ok", 7, 3);
+            }
+        });
+
+        List<ChatBatchResult> results = service.run(prompts("throttled-once", "bad-request", "read-timeout", "fine"), 4)
+                .collectList().block();
+
+        Map<String, ChatBatchResult> bySession = results.stream().filter(result -> result.getSummary() == null)
+                .collect(Collectors.toMap(ChatBatchResult::getSessionId, Function.identity()));
+        ChatBatchResult throttled = bySession.get("throttled-once");
+        assertThat(throttled.getError()).isNull();
+        assertThat(throttled.getAttempts()).isEqualTo(2);
+        // Jitter keeps the first delay within half of the configured backoff
+        assertThat(throttled.getDurationMs()).isGreaterThanOrEqualTo(BACKOFF_MS / 2);
+        assertThat(bySession.get("bad-request").getAttempts()).isEqualTo(1);
+        assertThat(bySession.get("read-timeout").getAttempts()).isEqualTo(3);
+        assertThat(bySession.get("read-timeout").getError()).contains("timed out");
+
+        ChatBatchSummary summary = results.get(results.size() - 1).getSummary();
+        assertThat(summary.getTotal()).isEqualTo(4);
+        assertThat(summary.getSucceeded()).isEqualTo(2);
+        assertThat(summary.getFailed()).isEqualTo(2);
+        assertThat(summary.getRetries()).isEqualTo(3);
+        assertThat(summary.getUsage().getInputTokens()).isEqualTo(17);
+        assertThat(summary.getUsage().getOutputTokens()).isEqualTo(8);
+        assertThat(summary.getUsage().getTotalTokens()).isEqualTo(25);
+    }
+
+    @Test
+    void resultsComeInCompletionOrderWithTheirRequestIndex() {
+        service = service(10, message -> {
+            if (message.equals("slow")) {
+                sleep(300);
+            }
+            return result(message, 1, 1);
+        });
+
+        List<ChatBatchResult> results = service.run(prompts("slow", "fast"), 2).collectList().block();
+
+        assertThat(results).hasSize(3);
+        assertThat(results.get(0).getIndex()).isEqualTo(1);
+        assertThat(results.get(0).getContent()).isEqualTo("fast");
+        assertThat(results.get(1).getIndex()).isEqualTo(0);
+        assertThat(results.get(1).getContent()).isEqualTo("slow");
+    }
+
+    @Test
+    void requestedConcurrencyIsCappedAtTheConfiguredDefault() {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        service = service(10, message -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            sleep(50);
+            inFlight.decrementAndGet();
+            return result(message, 1, 1);
+        });
+
+        service.run(prompts("a", "b", "c", "d", "e", "f"), 100).blockLast();
+
+        assertThat(maxInFlight.get()).isEqualTo(2);
+    }
+
+    @Test
+    void promptsPastTheCapAreNotReadAndReportedOnce() {
+        AtomicInteger read = new AtomicInteger();
+        service = service(3, message -> result(message, 1, 1));
+        Flux<ChatRequest> prompts = Flux.range(0, 100)
+                .doOnNext(i -> read.incrementAndGet())
+                .map(i -> new ChatRequest("s" + i, "prompt " + i));
+
+        List<ChatBatchResult> results = service.run(prompts, null).collectList().block();
+
+        assertThat(read.get()).isEqualTo(4);
+        List<ChatBatchResult> errors = results.stream().filter(result -> result.getError() != null).toList();
+        assertThat(errors).singleElement().satisfies(error -> {
+            assertThat(error.getIndex()).isEqualTo(3);
+            assertThat(error.getError()).contains("limited to 3 prompts");
+        });
+        assertThat(results.get(results.size() - 1).getSummary().getTotal()).isEqualTo(4);
+    }
+
+    @Test
+    void onlyThrottlingServerErrorsAndNetworkFailuresAreRetryable() {
+        assertThat(ChatBatchService.isRetryable(apiError(429))).isTrue();
+        assertThat(ChatBatchService.isRetryable(apiError(503))).isTrue();
+        assertThat(ChatBatchService.isRetryable(apiError(-1))).isTrue();
+        assertThat(ChatBatchService.isRetryable(new ApiException(new SocketTimeoutException("timeout")))).isTrue();
+        assertThat(ChatBatchService.isRetryable(apiError(400))).isFalse();
+        assertThat(ChatBatchService.isRetryable(apiError(401))).isFalse();
+        assertThat(ChatBatchService.isRetryable(new IllegalStateException())).isFalse();
+    }
+
+    private static ChatBatchService service(int maxPrompts, ChatGenerator generator) {
+        ChatBatchConfig config = new ChatBatchConfig();
+        config.setConcurrency(2);
+        config.setMaxConcurrency(8);
+        config.setMaxRetries(2);
+        config.setRetryBackoffMs(BACKOFF_MS);
+        config.setMaxPrompts(maxPrompts);
+        DashScopeConfig dashScopeConfig = new DashScopeConfig();
+        dashScopeConfig.setTimeoutSeconds(5);
+        return new ChatBatchService(generator, config, dashScopeConfig);
+    }
+
+    private static Flux<ChatRequest> prompts(String... messages) {
+        return Flux.fromArray(messages).map(message -> new ChatRequest(message, message));
+    }
+
+    private static GenerationResult result(String content, int inputTokens, int outputTokens) {
+        DashScopeResult raw = new DashScopeResult();
+        raw.setOutput(JsonParser.parseString("{\"choices\":[{\"finish_reason\":\"stop\","
+                + "\"message\":{\"role\":\"assistant\",\"content\":\"" + content + "\"}}]}"));
+        raw.setUsage(JsonParser.parseString("{\"input_tokens\":" + inputTokens + ",\"output_tokens\":" + outputTokens
+                + ",\"total_tokens\":" + (inputTokens + outputTokens) + "}"));
+        return GenerationResult.fromDashScopeResult(raw);
+    }
+
+    private static ApiException apiError(int statusCode) {
+        return new ApiException(Status.builder().statusCode(statusCode).message("HTTP " + statusCode).build());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
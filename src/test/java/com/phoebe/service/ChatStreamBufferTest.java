@@ -0,0 +1,243 @@
+package com.phoebe.service;
+
+import com.phoebe.config.ChatStreamConfig;
+import com.phoebe.config.ChatStreamConfig.SlowClientPolicy;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ChatStreamBufferTest {
+
+    // Every two-character delta costs 2 * 2 + 128 bytes
+    private static final long DELTA_BYTES = 132;
+
+    @Test
+    void coalescedDeltasKeepTheirOrder() {
+        ChatStreamConfig config = config(SlowClientPolicy.COALESCE, 600, 10_000);
+        ChatStreamBudget budget = new ChatStreamBudget(config);
+        ChatStreamBuffer buffer = buffer(config, budget);
+        Client client = Client.attach(buffer);
+
+        for (String delta : List.of("a1", "b2", "c3", "d4", "e5", "f6")) {
+            buffer.offerDelta(delta);
+        }
+        assertThat(buffer.getStats().getPendingEvents()).isEqualTo(2);
+        assertThat(buffer.getStats().getCoalescedDeltas()).isEqualTo(4);
+        assertThat(buffer.getStats().getBufferedBytes()).isLessThanOrEqualTo(600);
+
+        buffer.complete();
+        client.request(10);
+
+        assertThat(client.data()).containsExactly("a1b2c3d4e5", "f6");
+        assertThat(client.completed).isTrue();
+        assertThat(budget.getStats().getTotalBufferedBytes()).isZero();
+        assertThat(budget.getStats().getActiveStreams()).isZero();
+    }
+
+    @Test
+    void terminateSendsOneErrorEventAndCompletes() {
+        ChatStreamConfig config = config(SlowClientPolicy.TERMINATE, 300, 10_000);
+        ChatStreamBudget budget = new ChatStreamBudget(config);
+        ChatStreamBuffer buffer = buffer(config, budget);
+        Client client = Client.attach(buffer);
+
+        buffer.offerDelta("a1");
+        buffer.offerDelta("b2");
+        assertThatThrownBy(() -> buffer.offerDelta("c3")).isInstanceOf(ChatStreamBuffer.StreamClosedException.class);
+        assertThatThrownBy(() -> buffer.offerDelta("d4")).isInstanceOf(ChatStreamBuffer.StreamClosedException.class);
+        buffer.offerEvent(ServerSentEvent.builder("").event("done").build());
+        buffer.complete();
+
+        client.request(10);
+
+        assertThat(client.events).singleElement().satisfies(event -> assertThat(event.event()).isEqualTo("error"));
+        assertThat(client.completed).isTrue();
+        assertThat(budget.getStats().getTerminatedStreams()).isEqualTo(1);
+        assertThat(budget.getStats().getTotalBufferedBytes()).isZero();
+        assertThat(budget.getStats().getActiveStreams()).isZero();
+    }
+
+    @Test
+    void pauseTimesOutAndTerminates() {
+        ChatStreamConfig config = config(SlowClientPolicy.PAUSE, 600, 10_000);
+        config.setPauseTimeoutMs(200);
+        ChatStreamBudget budget = new ChatStreamBudget(config);
+        ChatStreamBuffer buffer = buffer(config, budget);
+        Client client = Client.attach(buffer);
+
+        buffer.offerDelta("a1");
+        buffer.offerDelta("b2");
+        long start = System.nanoTime();
+        // The queue may only use half of the stream limit under pause
+        assertThatThrownBy(() -> buffer.offerDelta("c3")).isInstanceOf(ChatStreamBuffer.StreamClosedException.class);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isGreaterThanOrEqualTo(200);
+
+        client.request(10);
+
+        assertThat(client.events).singleElement().satisfies(event -> assertThat(event.event()).isEqualTo("error"));
+        assertThat(client.completed).isTrue();
+        assertThat(budget.getStats().getTotalBufferedBytes()).isZero();
+    }
+
+    @Test
+    void pausedReaderResumesWhenTheClientReads() throws Exception {
+        ChatStreamConfig config = config(SlowClientPolicy.PAUSE, 600, 10_000);
+        config.setPauseTimeoutMs(5_000);
+        ChatStreamBudget budget = new ChatStreamBudget(config);
+        ChatStreamBuffer buffer = buffer(config, budget);
+        Client client = Client.attach(buffer);
+
+        buffer.offerDelta("a1");
+        buffer.offerDelta("b2");
+        CompletableFuture<Void> reader = CompletableFuture.runAsync(() -> buffer.offerDelta("c3"));
+        Thread.sleep(100);
+        assertThat(reader).isNotDone();
+        assertThat(buffer.getStats().isPaused()).isTrue();
+
+        client.request(1);
+        reader.get(1, TimeUnit.SECONDS);
+        buffer.complete();
+        client.request(10);
+
+        assertThat(client.data()).containsExactly("a1", "b2", "c3");
+        assertThat(client.completed).isTrue();
+        assertThat(budget.getStats().getTotalBufferedBytes()).isZero();
+    }
+
+    @Test
+    void undeliveredUpstreamDeltasAreChargedAndTerminateWhenTheyDoNotFit() {
+        ChatStreamConfig config = config(SlowClientPolicy.PAUSE, 600, 10_000);
+        ChatStreamBudget budget = new ChatStreamBudget(config);
+        ChatStreamBuffer buffer = buffer(config, budget);
+        Client client = Client.attach(buffer);
+
+        buffer.offerDelta("a1");
+        buffer.offerDelta("b2");
+        buffer.admitUpstream("c3");
+        buffer.admitUpstream("d4");
+        assertThat(buffer.getStats().getUpstreamBytes()).isEqualTo(2 * DELTA_BYTES);
+        assertThat(budget.getStats().getTotalBufferedBytes()).isEqualTo(4 * DELTA_BYTES);
+
+        buffer.releaseUpstream("c3");
+        assertThat(buffer.getStats().getUpstreamBytes()).isEqualTo(DELTA_BYTES);
+        buffer.admitUpstream("c3");
+        assertThatThrownBy(() -> buffer.admitUpstream("e5")).isInstanceOf(ChatStreamBuffer.StreamClosedException.class);
+        // The reader's late releases must not drive the budget negative
+        buffer.releaseUpstream("c3");
+
+        client.request(10);
+
+        assertThat(client.events).singleElement().satisfies(event -> assertThat(event.event()).isEqualTo("error"));
+        assertThat(client.completed).isTrue();
+        assertThat(budget.getStats().getTotalBufferedBytes()).isZero();
+    }
+
+    @Test
+    void cancellingReleasesEverythingTheStreamHeld() {
+        ChatStreamConfig config = config(SlowClientPolicy.COALESCE, 600, 10_000);
+        ChatStreamBudget budget = new ChatStreamBudget(config);
+        ChatStreamBuffer buffer = buffer(config, budget);
+        Client client = Client.attach(buffer);
+
+        buffer.offerDelta("a1");
+        buffer.offerDelta("b2");
+        buffer.admitUpstream("c3");
+        assertThat(budget.getStats().getTotalBufferedBytes()).isEqualTo(3 * DELTA_BYTES);
+        assertThat(budget.getStats().getActiveStreams()).isEqualTo(1);
+
+        client.cancel();
+
+        assertThat(budget.getStats().getTotalBufferedBytes()).isZero();
+        assertThat(budget.getStats().getActiveStreams()).isZero();
+        assertThatThrownBy(() -> buffer.offerDelta("d4")).isInstanceOf(ChatStreamBuffer.StreamClosedException.class);
+        buffer.releaseUpstream("c3");
+        assertThat(budget.getStats().getTotalBufferedBytes()).isZero();
+    }
+
+    @Test
+    void theGlobalLimitStopsASecondStream() {
+        ChatStreamConfig config = config(SlowClientPolicy.TERMINATE, 600, 700);
+        ChatStreamBudget budget = new ChatStreamBudget(config);
+        ChatStreamBuffer first = buffer(config, budget);
+        ChatStreamBuffer second = buffer(config, budget);
+        Client firstClient = Client.attach(first);
+        Client secondClient = Client.attach(second);
+
+        for (String delta : List.of("a1", "b2", "c3", "d4")) {
+            first.offerDelta(delta);
+        }
+        second.offerDelta("w1");
+        // Well within its own limit, but the streams together would pass the global one
+        assertThatThrownBy(() -> second.offerDelta("x2")).isInstanceOf(ChatStreamBuffer.StreamClosedException.class);
+        assertThat(first.getStats().getBufferedBytes()).isEqualTo(4 * DELTA_BYTES);
+
+        first.complete();
+        firstClient.request(10);
+        secondClient.request(10);
+
+        assertThat(firstClient.data()).containsExactly("a1", "b2", "c3", "d4");
+        assertThat(secondClient.events).extracting(ServerSentEvent::event).containsExactly("error");
+        assertThat(budget.getStats().getTerminatedStreams()).isEqualTo(1);
+        assertThat(budget.getStats().getTotalBufferedBytes()).isZero();
+        assertThat(budget.getStats().getActiveStreams()).isZero();
+    }
+
+    private static ChatStreamConfig config(SlowClientPolicy policy, long maxBufferBytes, long maxTotalBufferBytes) {
+        ChatStreamConfig config = new ChatStreamConfig();
+        config.setSlowClientPolicy(policy);
+        config.setMaxBufferBytes(maxBufferBytes);
+        config.setMaxTotalBufferBytes(maxTotalBufferBytes);
+        return config;
+    }
+
+    private static ChatStreamBuffer buffer(ChatStreamConfig config, ChatStreamBudget budget) {
+        return new ChatStreamBuffer("session", config, budget,
+                delta -> ServerSentEvent.builder(delta).event("token").build(),
+                reason -> ServerSentEvent.builder(reason).event("error").build());
+    }
+
+    /**
+     * Subscriber that only requests when told to, standing in for a slow SSE client
+     */
+    private static final class Client extends BaseSubscriber<ServerSentEvent<String>> {
+
+        private final List<ServerSentEvent<String>> events = new CopyOnWriteArrayList<>();
+        private volatile boolean completed;
+
+        static Client attach(ChatStreamBuffer buffer) {
+            Client client = new Client();
+            Flux.<ServerSentEvent<String>>create(buffer::attach, FluxSink.OverflowStrategy.ERROR).subscribe(client);
+            return client;
+        }
+
+        List<String> data() {
+            return events.stream().map(ServerSentEvent::data).toList();
+        }
+
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+            // No demand until the test asks for it
+        }
+
+        @Override
+        protected void hookOnNext(ServerSentEvent<String> event) {
+            events.add(event);
+        }
+
+        @Override
+        protected void hookOnComplete() {
+            completed = true;
+        }
+    }
+}
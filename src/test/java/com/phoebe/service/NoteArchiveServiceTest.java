@@ -0,0 +1,73 @@
+package com.phoebe.service;
+
+import com.phoebe.dto.NoteImportResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "notes.sharding.shards[0].url=r2dbc:h2:mem:///archivetest;DB_CLOSE_DELAY=-1",
+        "notes.sharding.shards[0].username=sa",
+        "notes.archive.import-max-line-length=300"
+})
+class NoteArchiveServiceTest {
+
+    @Autowired
+    private NoteArchiveService archiveService;
+
+    @Test
+    void linesTheTableWouldRejectAreCountedAsInvalid() {
+        String userId = UUID.randomUUID().toString();
+        String id = UUID.randomUUID().toString();
+        String body = line(id, "web", "ok") + "\r\n"
+                + line(UUID.randomUUID().toString(), "x".repeat(21), "source too long") + "\n"
+                + "{\"source\":\"web\",\"title\":\"" + "t".repeat(501) + "\",\"content\":\"c\","
+                + "\"createdAt\":\"2024-01-01T00:00:00Z\"}\n"
+                + "{\"source\":\"web\",\"content\":\"" + "c".repeat(400) + "\",\"createdAt\":\"2024-01-01T00:00:00Z\"}\n"
+                + "not json\n"
+                + line(UUID.randomUUID().toString(), "web", "last line without newline");
+
+        NoteImportResponse result = archiveService.importNotes(userId, body(body)).block();
+
+        assertThat(result.getImported()).isEqualTo(2);
+        assertThat(result.getDuplicates()).isZero();
+        assertThat(result.getInvalid()).isEqualTo(4);
+    }
+
+    @Test
+    void existingIdsAreSkippedAcrossImports() {
+        String userId = UUID.randomUUID().toString();
+        String id = UUID.randomUUID().toString();
+        archiveService.importNotes(userId, body(line(id, "web", "first"))).block();
+
+        NoteImportResponse again = archiveService.importNotes(userId,
+                body(line(id, "web", "again") + "\n" + line(UUID.randomUUID().toString(), "web", "new"))).block();
+
+        assertThat(again.getImported()).isEqualTo(1);
+        assertThat(again.getDuplicates()).isEqualTo(1);
+        assertThat(again.getInvalid()).isZero();
+    }
+
+    private static String line(String id, String source, String content) {
+        return "{\"id\":\"" + id + "\",\"source\":\"" + source + "\",\"content\":\"" + content
+                + "\",\"createdAt\":\"2024-01-01T00:00:00Z\"}";
+    }
+
+    private static Flux<DataBuffer> body(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        // Split the body so lines straddle buffer boundaries
+        int half = bytes.length / 2;
+        DefaultDataBufferFactory factory = DefaultDataBufferFactory.sharedInstance;
+        return Flux.just(factory.wrap(Arrays.copyOfRange(bytes, 0, half)),
+                factory.wrap(Arrays.copyOfRange(bytes, half, bytes.length)));
+    }
+}
@@ -0,0 +1,86 @@
+package com.phoebe.service;
+
+import com.phoebe.config.ShardedConnectionFactory;
+import com.phoebe.dto.NoteChangeEvent;
+import com.phoebe.dto.NoteChangesResponse;
+import com.phoebe.entity.NoteChange;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "notes.sharding.shards[0].url=r2dbc:h2:mem:///changefeedtest;DB_CLOSE_DELAY=-1",
+        "notes.sharding.shards[0].username=sa",
+        "notes.changes.poll-interval-ms=100"
+})
+class NoteChangeServiceTest {
+
+    @Autowired
+    private NoteChangeService changeService;
+
+    @Autowired
+    private TransactionalOperator transactionalOperator;
+
+    @Autowired
+    private ShardedConnectionFactory shards;
+
+    @Test
+    void changeCommittedLaterIsNotSkippedByCursor() throws Exception {
+        String userId = UUID.randomUUID().toString();
+        // The first change creates the user's sequence row, so both writers below contend on its lock
+        commit(userId, changeService.record(userId, "note-0", NoteChange.OP_DELETE)).block();
+        long since = changes(userId, 0).getNextSince();
+
+        // A takes the next seq and holds its transaction open; B starts while A is still uncommitted.
+        // The H2 driver blocks while B waits for the lock, so B runs on its own thread, off the pool's and A's.
+        CompletableFuture<NoteChange> first = commit(userId, changeService.record(userId, "note-a", NoteChange.OP_DELETE)
+                .delayElement(Duration.ofMillis(600))).toFuture();
+        CompletableFuture<NoteChange> second = commit(userId, Mono.delay(Duration.ofMillis(150), Schedulers.boundedElastic())
+                .then(changeService.record(userId, "note-b", NoteChange.OP_DELETE))).toFuture();
+        Thread.sleep(300);
+
+        // B waits for A's row lock, so nothing past since is visible yet
+        NoteChangesResponse during = changes(userId, since);
+        assertThat(during.getChanges()).isEmpty();
+        assertThat(during.getNextSince()).isEqualTo(since);
+
+        CompletableFuture.allOf(first, second).get();
+        NoteChangesResponse after = changes(userId, since);
+        assertThat(after.getChanges().stream().map(NoteChangeEvent::getSeq).collect(Collectors.toList()))
+                .containsExactly(since + 1, since + 2);
+        assertThat(after.getChanges().stream().map(NoteChangeEvent::getNoteId).collect(Collectors.toList()))
+                .containsExactly("note-a", "note-b");
+    }
+
+    @Test
+    void streamPushesChangesCommittedAfterSubscribing() {
+        String userId = UUID.randomUUID().toString();
+        commit(userId, changeService.record(userId, "note-0", NoteChange.OP_DELETE)).block();
+
+        StepVerifier.create(changeService.streamChanges(userId, 0).map(event -> event.data().getNoteId()))
+                .expectNext("note-0")
+                .then(() -> commit(userId, changeService.record(userId, "note-1", NoteChange.OP_DELETE)).block())
+                .expectNext("note-1")
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    private <T> Mono<T> commit(String userId, Mono<T> write) {
+        return write.as(transactionalOperator::transactional).contextWrite(shards.routeToUser(userId));
+    }
+
+    private NoteChangesResponse changes(String userId, long since) {
+        return changeService.getChanges(userId, since, 100).block();
+    }
+}
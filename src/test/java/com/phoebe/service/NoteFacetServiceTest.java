@@ -0,0 +1,71 @@
+package com.phoebe.service;
+
+import com.phoebe.config.ShardedConnectionFactory;
+import com.phoebe.dto.FacetCount;
+import com.phoebe.dto.NoteFacetSummary;
+import com.phoebe.entity.Note;
+import com.phoebe.repository.NoteRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+@SpringBootTest(properties = {
+        "notes.sharding.shards[0].url=r2dbc:h2:mem:///facettest;DB_CLOSE_DELAY=-1",
+        "notes.sharding.shards[0].username=sa"
+})
+class NoteFacetServiceTest {
+
+    @Autowired
+    private NoteFacetService facetService;
+
+    @Autowired
+    private NoteRepository noteRepository;
+
+    @Test
+    void repairAllRecountsNotesWrittenWithoutCounters() {
+        List<String> userIds = List.of(UUID.randomUUID().toString(), UUID.randomUUID().toString());
+        List<Note> notes = new ArrayList<>();
+        for (String userId : userIds) {
+            notes.add(note(userId, "web", Note.STATUS_ACTIVE));
+            notes.add(note(userId, "ios", Note.STATUS_ACTIVE));
+            notes.add(note(userId, "web", Note.STATUS_DELETED));
+        }
+        // Stored straight into the table, so no counter knows about them yet
+        noteRepository.insertAll(notes).contextWrite(ShardedConnectionFactory.routeToShard(0)).block();
+
+        assertThat(facetService.repairAll().block().getUsersFailed()).isZero();
+
+        for (String userId : userIds) {
+            NoteFacetSummary summary = facetService.getSummary(userId).block();
+            assertThat(summary.getTotal()).isEqualTo(2);
+            assertThat(summary.getSources()).extracting(FacetCount::getValue, FacetCount::getCount)
+                    .containsExactlyInAnyOrder(tuple("web", 1L), tuple("ios", 1L));
+        }
+    }
+
+    @Test
+    void scheduledRepairIsOffByDefault() {
+        String userId = UUID.randomUUID().toString();
+        noteRepository.insertAll(List.of(note(userId, "web", Note.STATUS_ACTIVE)))
+                .contextWrite(ShardedConnectionFactory.routeToShard(0)).block();
+
+        facetService.scheduledRepair().block();
+
+        NoteFacetSummary summary = facetService.getSummary(userId).block();
+        assertThat(summary.getTotal()).isZero();
+    }
+
+    private static Note note(String userId, String source, int status) {
+        OffsetDateTime createdAt = OffsetDateTime.parse("2024-03-01T00:00:00Z");
+        return new Note(UUID.randomUUID().toString(), userId, source, null, "content " + UUID.randomUUID(),
+                null, "[\"tag\"]", status, createdAt, createdAt);
+    }
+}
@@ -0,0 +1,61 @@
+package com.phoebe.service;
+
+import com.phoebe.dto.FacetCount;
+import com.phoebe.dto.NoteRecord;
+import com.phoebe.dto.NoteRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "notes.sharding.shards[0].url=r2dbc:h2:mem:///notetest;DB_CLOSE_DELAY=-1",
+        "notes.sharding.shards[0].username=sa",
+        "notes.dedup.policy=merge"
+})
+class NoteServiceTest {
+
+    private static final String CONTENT = "A long enough note about reactive streams and sharded databases, written once";
+
+    @Autowired
+    private NoteService noteService;
+
+    @Autowired
+    private NoteFacetService facetService;
+
+    @Test
+    void concurrentMergeAndDeleteKeepTagCountsExact() {
+        for (int i = 0; i < 20; i++) {
+            String userId = UUID.randomUUID().toString();
+            String targetId = noteService.createNote(request(userId, "first")).block().getId();
+
+            // The driver blocks in tests, so each side needs a thread of its own to overlap
+            Mono.zip(noteService.createNote(request(userId, "second")).subscribeOn(Schedulers.boundedElastic()),
+                            noteService.deleteNote(targetId, userId).subscribeOn(Schedulers.boundedElastic()))
+                    .block();
+
+            Map<String, Long> expected = noteService.getActiveNoteRecords(userId, null)
+                    .flatMapIterable(NoteRecord::getTags)
+                    .collect(Collectors.groupingBy(tag -> tag, Collectors.counting()))
+                    .block();
+            Map<String, Long> counted = facetService.getSummary(userId).block().getTags().stream()
+                    .filter(tag -> tag.getCount() != 0)
+                    .collect(Collectors.toMap(FacetCount::getValue, FacetCount::getCount));
+            assertThat(counted).isEqualTo(expected);
+        }
+    }
+
+    private static NoteRequest request(String userId, String tag) {
+        return new NoteRequest(userId, "web", null, CONTENT, null, List.of(tag),
+                OffsetDateTime.parse("2024-03-01T00:00:00Z"));
+    }
+}
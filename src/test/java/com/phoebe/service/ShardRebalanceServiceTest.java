@@ -0,0 +1,142 @@
+package com.phoebe.service;
+
+import com.phoebe.config.ShardedConnectionFactory;
+import com.phoebe.dto.NoteChangeEvent;
+import com.phoebe.dto.NoteChangesResponse;
+import com.phoebe.entity.Note;
+import com.phoebe.entity.NoteChange;
+import com.phoebe.exception.UserMovingException;
+import com.phoebe.repository.NoteChangeRepository;
+import com.phoebe.repository.NoteRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+@SpringBootTest(properties = {
+        "notes.sharding.shards[0].url=r2dbc:h2:mem:///rebalance0;DB_CLOSE_DELAY=-1",
+        "notes.sharding.shards[0].username=sa",
+        "notes.sharding.shards[1].url=r2dbc:h2:mem:///rebalance1;DB_CLOSE_DELAY=-1",
+        "notes.sharding.shards[1].username=sa",
+        "notes.sharding.previous-shard-count=1"
+})
+class ShardRebalanceServiceTest {
+
+    @Autowired
+    private ShardRebalanceService rebalanceService;
+
+    @Autowired
+    private NoteChangeService changeService;
+
+    @Autowired
+    private NoteService noteService;
+
+    @Autowired
+    private NoteRepository noteRepository;
+
+    @Autowired
+    private NoteChangeRepository changeRepository;
+
+    @Autowired
+    private TransactionalOperator transactionalOperator;
+
+    @Autowired
+    private ShardedConnectionFactory shards;
+
+    @Test
+    void movedNotesAreReemittedAboveTheOldCursor() {
+        String userId = movingUser();
+        int source = 0;
+        Note active = note(userId, Note.STATUS_ACTIVE);
+        Note deleted = note(userId, Note.STATUS_DELETED);
+
+        // The user's notes and feed live on the shard they had before the second one was added
+        noteRepository.insertAll(List.of(active, deleted))
+                .then(changeService.record(userId, active.getId(), NoteChange.OP_CREATE))
+                .then(changeService.record(userId, deleted.getId(), NoteChange.OP_CREATE))
+                .then(changeService.record(userId, deleted.getId(), NoteChange.OP_DELETE))
+                .as(transactionalOperator::transactional)
+                .contextWrite(ShardedConnectionFactory.routeToShard(source))
+                .block();
+        long since = 3;
+
+        assertThat(rebalanceService.rebalance().block().getUsersMoved()).isEqualTo(1);
+
+        NoteChangesResponse changes = changeService.getChanges(userId, since, 100).block();
+        assertThat(changes.isResyncRequired()).isFalse();
+        assertThat(changes.getChanges()).allSatisfy(event -> assertThat(event.getSeq()).isGreaterThan(since));
+        assertThat(changes.getChanges()).extracting(NoteChangeEvent::getNoteId, NoteChangeEvent::getOp)
+                .containsExactlyInAnyOrder(
+                        tuple(active.getId(), NoteChange.OP_CREATE),
+                        tuple(deleted.getId(), NoteChange.OP_DELETE));
+        assertThat(noteRepository.findByUserId(userId)
+                .contextWrite(ShardedConnectionFactory.routeToShard(source)).collectList().block()).isEmpty();
+        assertThat(shards.resolveShard(userId).block()).isEqualTo(1);
+    }
+
+    @Test
+    void deleteBeforeTheRebalanceIsKept() {
+        String userId = movingUser();
+        Note note = note(userId, Note.STATUS_ACTIVE);
+        storeOnOldShard(note);
+
+        // Shards were added but the user has not been moved: requests still reach their notes
+        assertThat(noteService.getActiveNotes(userId).collectList().block()).extracting(Note::getId)
+                .containsExactly(note.getId());
+        assertThat(noteService.deleteNote(note.getId(), userId).block().getStatus()).isEqualTo("deleted");
+
+        rebalanceService.rebalance().block();
+
+        assertThat(noteService.getActiveNotes(userId).collectList().block()).isEmpty();
+        assertThat(noteRepository.findByUserId(userId).contextWrite(ShardedConnectionFactory.routeToShard(1))
+                .collectList().block()).extracting(Note::getStatus).containsExactly(Note.STATUS_DELETED);
+    }
+
+    @Test
+    void writesAreRefusedWhileTheUserIsMoving() {
+        String userId = movingUser();
+        Note note = note(userId, Note.STATUS_ACTIVE);
+        storeOnOldShard(note);
+        changeRepository.setMoveState(userId, ShardedConnectionFactory.MOVE_STATE_MOVING)
+                .contextWrite(ShardedConnectionFactory.routeToShard(0)).block();
+
+        assertThatThrownBy(() -> noteService.deleteNote(note.getId(), userId).block())
+                .isInstanceOf(UserMovingException.class);
+        assertThat(noteService.getActiveNotes(userId).collectList().block()).hasSize(1);
+
+        rebalanceService.rebalance().block();
+
+        assertThat(noteService.deleteNote(note.getId(), userId).block().getStatus()).isEqualTo("deleted");
+    }
+
+    private void storeOnOldShard(Note note) {
+        noteRepository.insertAll(List.of(note))
+                .then(changeService.record(note.getUserId(), note.getId(), NoteChange.OP_CREATE))
+                .as(transactionalOperator::transactional)
+                .contextWrite(ShardedConnectionFactory.routeToShard(0))
+                .block();
+    }
+
+    // A user that lived on shard 0 and belongs on shard 1 now
+    private String movingUser() {
+        String userId;
+        do {
+            userId = UUID.randomUUID().toString();
+        } while (shards.shardOf(userId) != 1);
+        return userId;
+    }
+
+    private static Note note(String userId, int status) {
+        OffsetDateTime now = OffsetDateTime.now();
+        return new Note(UUID.randomUUID().toString(), userId, "web", null, "content " + UUID.randomUUID(),
+                null, null, status, now, now);
+    }
+}
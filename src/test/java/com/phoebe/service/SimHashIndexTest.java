@@ -0,0 +1,54 @@
+package com.phoebe.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SimHashIndexTest {
+
+    @Test
+    void findsTheClosestEntryWithinMaxDistance() {
+        SimHashIndex index = new SimHashIndex(3, 0);
+        index.add("far", 0b1111L);
+        index.add("near", 0b0001L);
+
+        SimHashIndex.Match match = index.nearest(0L);
+
+        assertThat(match.getId()).isEqualTo("near");
+        assertThat(match.getDistance()).isEqualTo(1);
+        assertThat(index.nearest(-1L)).isNull();
+    }
+
+    @Test
+    void addingAnIdAgainReplacesItsFingerprint() {
+        SimHashIndex index = new SimHashIndex(2, 0);
+        index.add("a", 0L);
+        index.add("a", -1L);
+
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.nearest(0L)).isNull();
+        assertThat(index.nearest(-1L).getId()).isEqualTo("a");
+    }
+
+    @Test
+    void removedEntriesStayGoneAcrossRebuilds() {
+        SimHashIndex index = new SimHashIndex(4, 0);
+        for (int i = 0; i < 100; i++) {
+            index.add("n" + i, (long) i << 40);
+        }
+        for (int i = 0; i < 100; i += 2) {
+            index.remove("n" + i);
+        }
+        // Enough new entries to compact and grow the arrays
+        for (int i = 100; i < 200; i++) {
+            index.add("n" + i, (long) i << 40);
+        }
+        index.remove("n101");
+
+        assertThat(index.size()).isEqualTo(149);
+        assertThat(index.nearest(2L << 40).getDistance()).isNotZero();
+        assertThat(index.nearest(101L << 40).getDistance()).isNotZero();
+        assertThat(index.nearest(3L << 40).getId()).isEqualTo("n3");
+        assertThat(index.nearest(199L << 40).getId()).isEqualTo("n199");
+    }
+}
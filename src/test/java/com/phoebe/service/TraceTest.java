@@ -0,0 +1,43 @@
+package com.phoebe.service;
+
+import com.phoebe.dto.SpanRecord;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TraceTest {
+
+    @Test
+    void handlerRecordsDecodeValidateBeforeSubscription() {
+        Trace trace = new Trace("t1", "POST /api/v1/notes");
+
+        Trace.handler(Mono.just("ok"))
+                .contextWrite(context -> context.put(Trace.CONTEXT_KEY, trace))
+                .block();
+
+        assertThat(trace.finish(201, "SUCCESS").getSpans()).extracting(SpanRecord::getName)
+                .containsExactly("request.decode_validate", "response.serialize_write");
+    }
+
+    @Test
+    void streamingHandlerDoesNotClaimTheBodyWasDecoded() {
+        Trace trace = new Trace("t2", "POST /api/v1/notes/import");
+
+        Trace.streamingHandler(Flux.just(1, 2, 3))
+                .contextWrite(context -> context.put(Trace.CONTEXT_KEY, trace))
+                .blockLast();
+
+        assertThat(trace.finish(200, "SUCCESS").getSpans()).extracting(SpanRecord::getName)
+                .containsExactly("request.dispatch", "response.serialize_write");
+    }
+
+    @Test
+    void unsampledRequestsRecordNothing() {
+        Trace.NOOP.spanSince("anything", System.nanoTime());
+
+        assertThat(Trace.handler(Mono.just("ok")).block()).isEqualTo("ok");
+        assertThat(Trace.NOOP.finish(200, "SUCCESS").getSpans()).isEmpty();
+    }
+}